@@ -1,19 +1,41 @@
 package de.midevelopment.minecraft.bungeePlaytimeTracker;
 
+import de.midevelopment.minecraft.bungeePlaytimeTracker.analytics.ConcurrencySeries;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.analytics.NetworkAnalytics;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.ClusterHandler;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.database.Database;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlaytimeHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlayerSnapshot;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.ServerRegistry;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.KnownPlayerRegistry;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.PlayerNameIndex;
 
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SharePoint {
 
-    private final static Map<UUID, Integer> playerSessions = new HashMap<>();
+    private final static Map<UUID, OpenSession> playerSessions = new ConcurrentHashMap<>();
 
     private static Database DATABASE = new Database();
 
-    private static PlaytimeHandler PLAYTIMEHANDLER;
+    private static final PlayerNameIndex PLAYERNAMEINDEX = new PlayerNameIndex();
+
+    private static volatile PlayerSnapshot PLAYERSNAPSHOT;
+
+    private static final KnownPlayerRegistry KNOWNPLAYERS = new KnownPlayerRegistry();
+
+    private static volatile PlaytimeHandler PLAYTIMEHANDLER;
+
+    private static ClusterHandler CLUSTERHANDLER;
+
+    private static ServerRegistry SERVERREGISTRY;
+
+    private static NetworkAnalytics NETWORKANALYTICS;
+
+    private static ConcurrencySeries CONCURRENCYSERIES;
 
     public static void setPlaytimeHandler(PlaytimeHandler playtimeHandler) { PLAYTIMEHANDLER = playtimeHandler; }
 
@@ -21,11 +43,56 @@ public class SharePoint {
 
     public static Database getDatabase() { return DATABASE; }
 
-    public static void setPlayerSession(UUID uuid, int session) { playerSessions.put(uuid, session); }
-    public static int getPlayerSession(UUID uuid) { return playerSessions.getOrDefault(uuid, 0); }
-    public static void removePlayerSession(UUID uuid) { playerSessions.remove(uuid); }
+    public static PlayerNameIndex getPlayerNameIndex() { return PLAYERNAMEINDEX; }
+
+    public static KnownPlayerRegistry getKnownPlayers() { return KNOWNPLAYERS; }
+
+    public static void setPlayerSnapshot(PlayerSnapshot playerSnapshot) { PLAYERSNAPSHOT = playerSnapshot; }
+
+    /**
+     * @return the snapshot of all players, or null if none was loaded yet
+     */
+    public static PlayerSnapshot getPlayerSnapshot() { return PLAYERSNAPSHOT; }
+
+    public static void setClusterHandler(ClusterHandler clusterHandler) { CLUSTERHANDLER = clusterHandler; }
+
+    public static ClusterHandler getClusterHandler() { return CLUSTERHANDLER; }
+
+    public static void setServerRegistry(ServerRegistry serverRegistry) { SERVERREGISTRY = serverRegistry; }
+
+    /**
+     * @return the server ids shared by the playtime handler and the statistics
+     */
+    public static ServerRegistry getServerRegistry() { return SERVERREGISTRY; }
+
+    public static void setNetworkAnalytics(NetworkAnalytics networkAnalytics) { NETWORKANALYTICS = networkAnalytics; }
+
+    public static NetworkAnalytics getNetworkAnalytics() { return NETWORKANALYTICS; }
+
+    public static void setConcurrencySeries(ConcurrencySeries concurrencySeries) { CONCURRENCYSERIES = concurrencySeries; }
+
+    public static ConcurrencySeries getConcurrencySeries() { return CONCURRENCYSERIES; }
+
+    public static void setPlayerSession(UUID uuid, int session, String serverName) { playerSessions.put(uuid, new OpenSession(session, serverName, System.currentTimeMillis())); }
+    public static int getPlayerSession(UUID uuid) { OpenSession session = playerSessions.get(uuid); return session == null ? 0 : session.sessionId(); }
+    public static OpenSession getOpenSession(UUID uuid) { return playerSessions.get(uuid); }
+    public static boolean replacePlayerSession(UUID uuid, OpenSession expected, int session) { return playerSessions.replace(uuid, expected, new OpenSession(session, expected.serverName(), System.currentTimeMillis())); }
+    public static OpenSession removePlayerSession(UUID uuid) { return playerSessions.remove(uuid); }
     public static boolean hasPlayerSession(UUID uuid) { return playerSessions.containsKey(uuid); }
     public static void clearPlayerSessions() { playerSessions.clear(); }
-    public static Map<UUID, Integer> getPlayerSessions() { return playerSessions; }
+    public static Map<UUID, OpenSession> getPlayerSessions() { return playerSessions; }
+    public static Collection<Integer> getPlayerSessionIds() { return playerSessions.values().stream().map(OpenSession::sessionId).filter(id -> id >= 0).toList(); }
+
+    /**
+     * A session of an online player.
+     *
+     * @param sessionId   the id of the session in the database, or -1 if it is counted in memory
+     * @param serverName  the server the session is played on
+     * @param startMillis when the session was started on this proxy
+     */
+    public record OpenSession(int sessionId, String serverName, long startMillis) {
+
+        public long getSeconds() { return (System.currentTimeMillis() - startMillis) / 1000; }
+    }
 
 }
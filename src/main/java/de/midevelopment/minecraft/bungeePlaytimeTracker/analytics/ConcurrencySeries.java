@@ -0,0 +1,293 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.Database;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.ServerRegistry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Time series of the online players per server.
+ * Every proxy samples the players it has connected to each server at a fixed interval into a ring buffer per server.
+ * Samples are aligned to the interval, so the series of several proxies can be added up.
+ * Each full block of samples is written as a {@link DeltaChunk} into {@code mi_bungee_concurrency},
+ * which stores about one byte per sample.
+ */
+public class ConcurrencySeries {
+
+    public static final int SAMPLE_SECONDS = 10;
+    /**
+     * One hour of samples per block.
+     */
+    private static final int BLOCK_SIZE = 360;
+    /**
+     * One week of samples are summed at a time when reading a range.
+     */
+    private static final int WINDOW_SAMPLES = 7 * 24 * 3600 / SAMPLE_SECONDS;
+    private static final int NO_SAMPLE = -1;
+
+    private static final String SQL_SAVE = """
+            INSERT INTO mi_bungee_concurrency (server_id, instance_id, start_epoch, sample_seconds, samples, data) VALUES (?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE sample_seconds = VALUES(sample_seconds), samples = VALUES(samples), data = VALUES(data);
+            """;
+    private static final String SQL_QUERY = """
+            SELECT server_id, instance_id, start_epoch, sample_seconds, samples, data FROM mi_bungee_concurrency
+            WHERE start_epoch BETWEEN ? AND ? %s;
+            """;
+
+    private final Database database;
+    private final ServerRegistry serverRegistry;
+    private final int instanceId;
+    private final Map<Integer, Ring> rings = new ConcurrentHashMap<>();
+    private final Queue<Chunk> pending = new ConcurrentLinkedQueue<>();
+
+    public ConcurrencySeries(Database database, ServerRegistry serverRegistry, int instanceId) {
+        this.database = database;
+        this.serverRegistry = serverRegistry;
+        this.instanceId = instanceId;
+    }
+
+    /**
+     * Records the online players of all servers and writes the blocks that were completed.
+     * Servers that were sampled before and are missing now are recorded with zero players.
+     *
+     * @param online       The amount of players on this proxy by server name.
+     * @param epochSeconds The current time, it is aligned down to the sample interval.
+     */
+    public void sample(Map<String, Integer> online, long epochSeconds) {
+        long time = epochSeconds - Math.floorMod(epochSeconds, SAMPLE_SECONDS);
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Integer serverId : rings.keySet()) counts.put(serverId, 0);
+        for (Map.Entry<String, Integer> entry : online.entrySet()) {
+            int serverId = serverRegistry.getOrCreateId(entry.getKey());
+            if (serverId > 0) counts.put(serverId, entry.getValue());
+        }
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            rings.computeIfAbsent(entry.getKey(), Ring::new).add(time, entry.getValue());
+        }
+        writePending();
+    }
+
+    /**
+     * Closes all unfinished blocks and writes them, used on shutdown.
+     */
+    public void flush() {
+        for (Ring ring : rings.values()) ring.closeBlock();
+        writePending();
+    }
+
+    private void writePending() {
+        if (pending.isEmpty()) return;
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SAVE)) {
+            Chunk chunk;
+            while ((chunk = pending.peek()) != null) {
+                ps.setInt(1, chunk.serverId());
+                ps.setInt(2, instanceId);
+                ps.setLong(3, chunk.startEpoch());
+                ps.setInt(4, SAMPLE_SECONDS);
+                ps.setInt(5, chunk.samples());
+                ps.setBytes(6, chunk.data());
+                ps.executeUpdate();
+                pending.remove(chunk);
+            }
+        } catch (SQLException e) {
+            // the chunks stay queued and are written with the next sample
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the online players of a server, or of the whole network, summed over all proxies and downsampled into buckets.
+     *
+     * @param serverName    The name of the server, or null for the whole network.
+     * @param from          The start of the range, inclusive.
+     * @param to            The end of the range, inclusive.
+     * @param bucketSeconds The length of one bucket, at least the sample interval.
+     * @return The buckets that contain samples, oldest first.
+     */
+    public List<Point> query(String serverName, Instant from, Instant to, int bucketSeconds) {
+        Integer serverId = null;
+        if (serverName != null) {
+            serverId = serverRegistry.getId(serverName);
+            if (serverId < 0) return List.of();
+        }
+
+        long bucket = Math.max(SAMPLE_SECONDS, bucketSeconds);
+        List<Point> points = new ArrayList<>();
+        // the current bucket: start, peak, sum and amount of samples, carried over from one window to the next
+        long[] current = {Long.MIN_VALUE, 0, 0, 0};
+        forEachWindow(serverId, from.getEpochSecond(), to.getEpochSecond(), (windowStart, sums) -> {
+            int[] totals = new int[WINDOW_SAMPLES];
+            Arrays.fill(totals, NO_SAMPLE);
+            for (int[] series : sums.values()) {
+                for (int i = 0; i < WINDOW_SAMPLES; i++) {
+                    if (series[i] != NO_SAMPLE) totals[i] = totals[i] == NO_SAMPLE ? series[i] : totals[i] + series[i];
+                }
+            }
+            for (int i = 0; i < WINDOW_SAMPLES; i++) {
+                if (totals[i] == NO_SAMPLE) continue;
+                long time = windowStart + (long) i * SAMPLE_SECONDS;
+                long start = time - Math.floorMod(time, bucket);
+                if (start != current[0]) {
+                    if (current[3] > 0) points.add(new Point(Instant.ofEpochSecond(current[0]), (int) current[1], (double) current[2] / current[3]));
+                    current[0] = start;
+                    current[1] = 0;
+                    current[2] = 0;
+                    current[3] = 0;
+                }
+                current[1] = Math.max(current[1], totals[i]);
+                current[2] += totals[i];
+                current[3]++;
+            }
+        });
+        if (current[3] > 0) points.add(new Point(Instant.ofEpochSecond(current[0]), (int) current[1], (double) current[2] / current[3]));
+        return points;
+    }
+
+    /**
+     * Returns the highest amount of players online on each server at the same time, summed over all proxies.
+     *
+     * @param from The start of the range, inclusive.
+     * @param to   The end of the range, inclusive.
+     * @return The peak by server id.
+     */
+    public Map<Integer, Integer> getPeaks(Instant from, Instant to) {
+        Map<Integer, Integer> peaks = new HashMap<>();
+        forEachWindow(null, from.getEpochSecond(), to.getEpochSecond(), (windowStart, sums) -> sums.forEach((serverId, series) -> {
+            int peak = 0;
+            for (int value : series) peak = Math.max(peak, value);
+            peaks.merge(serverId, peak, Math::max);
+        }));
+        return peaks;
+    }
+
+    /**
+     * Sums the samples of the range over all proxies, one window of {@link #WINDOW_SAMPLES} samples at a time,
+     * so a long range never has to be held in memory at once.
+     * The samples of this proxy that are not written yet are added from memory.
+     *
+     * @param consumer Receives the start of every window and the sums by server id, indexed by sample,
+     *                 {@link #NO_SAMPLE} where no proxy has a sample.
+     */
+    private void forEachWindow(Integer serverId, long from, long to, BiConsumer<Long, Map<Integer, int[]>> consumer) {
+        List<Chunk> chunks = new ArrayList<>(pending);
+        for (Ring ring : rings.values()) {
+            Chunk open = ring.openBlock();
+            if (open != null) chunks.add(open);
+        }
+        // blocks of this proxy in memory replace the same blocks read from the database, so they are only counted once
+        Set<Long> ownBlocks = new HashSet<>();
+        for (Chunk chunk : chunks) ownBlocks.add(blockKey(chunk.serverId(), chunk.startEpoch()));
+
+        String sql = SQL_QUERY.formatted(serverId == null ? "" : "AND server_id = ?");
+        long first = from + Math.floorMod(-from, SAMPLE_SECONDS);
+        for (long windowStart = first; windowStart <= to; windowStart += (long) WINDOW_SAMPLES * SAMPLE_SECONDS) {
+            long windowEnd = Math.min(to, windowStart + (long) WINDOW_SAMPLES * SAMPLE_SECONDS - 1);
+            Map<Integer, int[]> sums = new HashMap<>();
+            try (Connection connection = database.getReadConnection();
+                 PreparedStatement ps = connection.prepareStatement(sql)) {
+                // blocks starting before the window can still contain samples of it
+                ps.setLong(1, windowStart - (long) BLOCK_SIZE * SAMPLE_SECONDS);
+                ps.setLong(2, windowEnd);
+                if (serverId != null) ps.setInt(3, serverId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getInt(2) == instanceId && ownBlocks.contains(blockKey(rs.getInt(1), rs.getLong(3)))) continue;
+                        add(sums, rs.getInt(1), rs.getLong(3), rs.getInt(4), DeltaChunk.decode(rs.getBytes(6), rs.getInt(5)), windowStart, windowEnd);
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            for (Chunk chunk : chunks) {
+                if (serverId != null && chunk.serverId() != serverId) continue;
+                if (chunk.startEpoch() > windowEnd || chunk.startEpoch() + (long) chunk.samples() * SAMPLE_SECONDS <= windowStart) continue;
+                add(sums, chunk.serverId(), chunk.startEpoch(), SAMPLE_SECONDS, DeltaChunk.decode(chunk.data(), chunk.samples()), windowStart, windowEnd);
+            }
+            if (!sums.isEmpty()) consumer.accept(windowStart, sums);
+        }
+    }
+
+    private static void add(Map<Integer, int[]> sums, int serverId, long startEpoch, int sampleSeconds, int[] values, long windowStart, long windowEnd) {
+        int[] series = sums.computeIfAbsent(serverId, id -> {
+            int[] empty = new int[WINDOW_SAMPLES];
+            Arrays.fill(empty, NO_SAMPLE);
+            return empty;
+        });
+        for (int i = 0; i < values.length; i++) {
+            long time = startEpoch + (long) i * sampleSeconds;
+            if (time < windowStart || time > windowEnd) continue;
+            int index = (int) ((time - windowStart) / SAMPLE_SECONDS);
+            series[index] = series[index] == NO_SAMPLE ? values[i] : series[index] + values[i];
+        }
+    }
+
+    private static long blockKey(int serverId, long startEpoch) {
+        return startEpoch * 65536 + serverId;
+    }
+
+    /**
+     * A downsampled bucket of the series.
+     *
+     * @param start   The start of the bucket.
+     * @param peak    The highest amount of players online inside the bucket.
+     * @param average The average amount of players online inside the bucket.
+     */
+    public record Point(Instant start, int peak, double average) {
+    }
+
+    private record Chunk(int serverId, long startEpoch, int samples, byte[] data) {
+    }
+
+    /**
+     * The samples of one server that are not written yet.
+     * A block is closed when it is full or when a sample was missed, so every block covers consecutive samples.
+     */
+    private class Ring {
+
+        private final int serverId;
+        private final int[] values = new int[BLOCK_SIZE];
+        private long written;
+        private int blockFill;
+        private long blockStart;
+        private long lastTime = Long.MIN_VALUE;
+
+        Ring(int serverId) {
+            this.serverId = serverId;
+        }
+
+        synchronized void add(long time, int value) {
+            if (time <= lastTime) return;
+            if (blockFill > 0 && time != lastTime + SAMPLE_SECONDS) closeBlock();
+            if (blockFill == 0) blockStart = time;
+            values[(int) (written % BLOCK_SIZE)] = value;
+            written++;
+            blockFill++;
+            lastTime = time;
+            if (blockFill == BLOCK_SIZE) closeBlock();
+        }
+
+        synchronized void closeBlock() {
+            Chunk chunk = openBlock();
+            if (chunk != null) pending.add(chunk);
+            blockFill = 0;
+        }
+
+        synchronized Chunk openBlock() {
+            if (blockFill == 0) return null;
+            int[] block = new int[blockFill];
+            for (int i = 0; i < blockFill; i++) {
+                block[i] = values[(int) ((written - blockFill + i) % BLOCK_SIZE)];
+            }
+            return new Chunk(serverId, blockStart, blockFill, DeltaChunk.encode(block, blockFill));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes a block of samples as the zigzag varint deltas between neighbouring samples.
+ * Online counts change slowly, so most samples need a single byte.
+ */
+public final class DeltaChunk {
+
+    private DeltaChunk() {
+    }
+
+    /**
+     * @param values The samples to encode.
+     * @param count  The amount of samples to take from the start of the array.
+     * @return The encoded samples.
+     */
+    public static byte[] encode(int[] values, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count + 8);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = values[i] - previous;
+            previous = values[i];
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                out.write((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            out.write(zigzag);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data  The encoded samples.
+     * @param count The amount of samples inside the data.
+     * @return The decoded samples.
+     * @throws IllegalArgumentException if the data ends before all samples are read.
+     */
+    public static int[] decode(byte[] data, int count) {
+        int[] values = new int[count];
+        int position = 0;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int zigzag = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (position >= data.length) throw new IllegalArgumentException("Chunk ends after " + i + " of " + count + " samples");
+                b = data[position++];
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = previous;
+        }
+        return values;
+    }
+}
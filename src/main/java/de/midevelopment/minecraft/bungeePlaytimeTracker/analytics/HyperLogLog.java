@@ -0,0 +1,76 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Estimates the amount of distinct players in a fixed 4 KiB of memory.
+ * Uses 4096 registers, which gives a standard error of about 1.6%.
+ * Two sketches can be merged without losing accuracy, so sketches of several proxies or
+ * several days can be combined into the unique count of their union.
+ */
+public class HyperLogLog {
+
+    private static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public synchronized void add(UUID uuid) {
+        long hash = mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+        int index = (int) (hash >>> (64 - PRECISION));
+        // the remaining bits with a sentinel so the rank is at most 64 - PRECISION + 1
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) registers[index] = rank;
+    }
+
+    public synchronized void merge(HyperLogLog other) {
+        byte[] otherRegisters = other.toBytes();
+        for (int i = 0; i < REGISTERS; i++) {
+            if (otherRegisters[i] > registers[i]) registers[i] = otherRegisters[i];
+        }
+    }
+
+    public synchronized long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public synchronized byte[] toBytes() {
+        return Arrays.copyOf(registers, REGISTERS);
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length != REGISTERS) throw new IllegalArgumentException("Expected " + REGISTERS + " registers, got " + bytes.length);
+        return new HyperLogLog(Arrays.copyOf(bytes, REGISTERS));
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
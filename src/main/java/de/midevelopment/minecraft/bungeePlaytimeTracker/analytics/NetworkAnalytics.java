@@ -0,0 +1,211 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.Database;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.ServerRegistry;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming network statistics fed by closed sessions.
+ * For every day (UTC) it keeps a {@link HyperLogLog} of the unique players and a {@link SessionLengthHistogram},
+ * once for the whole network and once per server. Only the last days are held in memory, so the memory stays
+ * fixed at about 4 KiB per server and day. The sketches are persisted per proxy into {@code mi_bungee_analytics}
+ * and merged across all proxies when they are queried.
+ */
+public class NetworkAnalytics {
+
+    /**
+     * The server id used for the sketches of the whole network.
+     */
+    public static final int NETWORK = 0;
+    private static final int DAYS_KEPT = 8;
+
+    private static final String SQL_LOAD = """
+            SELECT day, server_id, uniques, lengths FROM mi_bungee_analytics WHERE instance_id = ? AND day >= ?;
+            """;
+    private static final String SQL_SAVE = """
+            INSERT INTO mi_bungee_analytics (day, server_id, instance_id, uniques, lengths) VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE uniques = VALUES(uniques), lengths = VALUES(lengths);
+            """;
+    private static final String SQL_QUERY = """
+            SELECT day, server_id, instance_id, uniques, lengths FROM mi_bungee_analytics WHERE day BETWEEN ? AND ?;
+            """;
+
+    private final Database database;
+    private final ServerRegistry serverRegistry;
+    private final int instanceId;
+    private final Map<SketchKey, DailySketch> sketches = new ConcurrentHashMap<>();
+
+    public NetworkAnalytics(Database database, ServerRegistry serverRegistry, int instanceId) {
+        this.database = database;
+        this.serverRegistry = serverRegistry;
+        this.instanceId = instanceId;
+    }
+
+    /**
+     * Adds a closed session to the statistics of today.
+     *
+     * @param uuid       The unique identifier of the player.
+     * @param serverName The server the session was played on.
+     * @param seconds    The length of the session.
+     */
+    public void recordSessionClose(UUID uuid, String serverName, long seconds) {
+        LocalDate day = today();
+        sketches.computeIfAbsent(new SketchKey(day, NETWORK), key -> new DailySketch()).record(uuid, seconds);
+        int serverId = serverRegistry.getOrCreateId(serverName);
+        if (serverId > 0) {
+            sketches.computeIfAbsent(new SketchKey(day, serverId), key -> new DailySketch()).record(uuid, seconds);
+        }
+    }
+
+    /**
+     * Loads the sketches this proxy persisted for the kept days, so a restart continues counting.
+     */
+    public void load() {
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_LOAD)) {
+            ps.setInt(1, instanceId);
+            ps.setDate(2, Date.valueOf(today().minusDays(DAYS_KEPT - 1)));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    DailySketch sketch = new DailySketch(HyperLogLog.fromBytes(rs.getBytes(3)), SessionLengthHistogram.fromBytes(rs.getBytes(4)));
+                    sketches.merge(new SketchKey(rs.getDate(1).toLocalDate(), rs.getInt(2)), sketch, DailySketch::merge);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes all changed sketches of this proxy and drops days that are no longer kept in memory.
+     */
+    public void persist() {
+        List<DailySketch> batched = new ArrayList<>();
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SAVE)) {
+            for (Map.Entry<SketchKey, DailySketch> entry : sketches.entrySet()) {
+                DailySketch sketch = entry.getValue();
+                if (!sketch.dirty) continue;
+                // cleared before the bytes are taken, so a session recorded meanwhile marks it dirty again
+                sketch.dirty = false;
+                ps.setDate(1, Date.valueOf(entry.getKey().day()));
+                ps.setInt(2, entry.getKey().serverId());
+                ps.setInt(3, instanceId);
+                ps.setBytes(4, sketch.uniques.toBytes());
+                ps.setBytes(5, sketch.lengths.toBytes());
+                ps.addBatch();
+                batched.add(sketch);
+            }
+            if (!batched.isEmpty()) ps.executeBatch();
+        } catch (SQLException e) {
+            // the next run writes the sketches again
+            batched.forEach(sketch -> sketch.dirty = true);
+            e.printStackTrace();
+            return;
+        }
+        LocalDate oldest = today().minusDays(DAYS_KEPT - 1);
+        sketches.entrySet().removeIf(entry -> entry.getKey().day().isBefore(oldest) && !entry.getValue().dirty);
+    }
+
+    /**
+     * Returns the statistics of all proxies between two days, merged per day and server.
+     * The sketches of this proxy are taken from memory where available, so they include unsaved sessions.
+     *
+     * @param from The first day (UTC), inclusive.
+     * @param to   The last day (UTC), inclusive.
+     * @return The merged sketches, the whole network under the server id {@link #NETWORK}.
+     */
+    public Map<SketchKey, DailySketch> query(LocalDate from, LocalDate to) {
+        Map<SketchKey, DailySketch> result = new HashMap<>();
+        for (Map.Entry<SketchKey, DailySketch> entry : sketches.entrySet()) {
+            LocalDate day = entry.getKey().day();
+            if (day.isBefore(from) || day.isAfter(to)) continue;
+            result.merge(entry.getKey(), entry.getValue().copy(), DailySketch::merge);
+        }
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_QUERY)) {
+            ps.setDate(1, Date.valueOf(from));
+            ps.setDate(2, Date.valueOf(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    SketchKey key = new SketchKey(rs.getDate(1).toLocalDate(), rs.getInt(2));
+                    // the own sketches in memory are newer than the persisted ones
+                    if (rs.getInt(3) == instanceId && sketches.containsKey(key)) continue;
+                    DailySketch sketch = new DailySketch(HyperLogLog.fromBytes(rs.getBytes(4)), SessionLengthHistogram.fromBytes(rs.getBytes(5)));
+                    result.merge(key, sketch, DailySketch::merge);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    public ServerRegistry getServerRegistry() { return serverRegistry; }
+
+    public static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param day      The day (UTC) of the statistics.
+     * @param serverId The id of the server, or {@link #NETWORK} for the whole network.
+     */
+    public record SketchKey(LocalDate day, int serverId) {
+    }
+
+    /**
+     * The statistics of one day and one server.
+     */
+    public static class DailySketch {
+
+        private final HyperLogLog uniques;
+        private final SessionLengthHistogram lengths;
+        private volatile boolean dirty;
+
+        public DailySketch() {
+            this(new HyperLogLog(), new SessionLengthHistogram());
+        }
+
+        private DailySketch(HyperLogLog uniques, SessionLengthHistogram lengths) {
+            this.uniques = uniques;
+            this.lengths = lengths;
+        }
+
+        void record(UUID uuid, long seconds) {
+            uniques.add(uuid);
+            lengths.add(seconds);
+            dirty = true;
+        }
+
+        /**
+         * Merges the other sketch into this one and returns this sketch.
+         */
+        public DailySketch merge(DailySketch other) {
+            uniques.merge(other.uniques);
+            lengths.merge(other.lengths);
+            return this;
+        }
+
+        public DailySketch copy() {
+            return new DailySketch(HyperLogLog.fromBytes(uniques.toBytes()), SessionLengthHistogram.fromBytes(lengths.toBytes()));
+        }
+
+        public HyperLogLog getUniques() { return uniques; }
+
+        public SessionLengthHistogram getLengths() { return lengths; }
+    }
+}
@@ -0,0 +1,53 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Counts sessions by length in fixed buckets.
+ * The buckets are the same for every histogram, so histograms of several proxies, servers or days can be added up.
+ */
+public class SessionLengthHistogram {
+
+    /**
+     * Upper bounds of the buckets in seconds, the last bucket counts everything longer.
+     */
+    private static final long[] UPPER_BOUNDS = {60, 5 * 60, 15 * 60, 30 * 60, 60 * 60, 2 * 60 * 60, 4 * 60 * 60};
+    public static final String[] LABELS = {"<1m", "1-5m", "5-15m", "15-30m", "30m-1h", "1-2h", "2-4h", "4h+"};
+    public static final int BUCKETS = LABELS.length;
+
+    private final long[] counts = new long[BUCKETS];
+
+    public synchronized void add(long seconds) {
+        int bucket = 0;
+        while (bucket < UPPER_BOUNDS.length && seconds >= UPPER_BOUNDS[bucket]) bucket++;
+        counts[bucket]++;
+    }
+
+    public synchronized void merge(SessionLengthHistogram other) {
+        long[] otherCounts = other.getCounts();
+        for (int i = 0; i < BUCKETS; i++) counts[i] += otherCounts[i];
+    }
+
+    public synchronized long[] getCounts() {
+        return counts.clone();
+    }
+
+    public synchronized long getTotal() {
+        long total = 0;
+        for (long count : counts) total += count;
+        return total;
+    }
+
+    public synchronized byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(BUCKETS * Long.BYTES);
+        for (long count : counts) buffer.putLong(count);
+        return buffer.array();
+    }
+
+    public static SessionLengthHistogram fromBytes(byte[] bytes) {
+        SessionLengthHistogram histogram = new SessionLengthHistogram();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < BUCKETS && buffer.remaining() >= Long.BYTES; i++) histogram.counts[i] = buffer.getLong();
+        return histogram;
+    }
+}
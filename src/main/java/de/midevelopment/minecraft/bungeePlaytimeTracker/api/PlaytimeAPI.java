@@ -0,0 +1,121 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.api;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlayerSnapshot;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlaytimeHandler;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.plugin.Plugin;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous access to the playtime data for other plugins on the proxy.
+ * All lookups run on the scheduler of the proxy, the returned futures complete there,
+ * so callers must not block the network threads waiting for them.
+ *
+ * <pre>{@code
+ * PlaytimeAPI.get().getPlaytimes(uuids).thenAccept(playtimes -> ...);
+ * }</pre>
+ */
+public final class PlaytimeAPI {
+
+    private static volatile PlaytimeAPI INSTANCE;
+
+    private final Executor executor;
+
+    private PlaytimeAPI(Plugin plugin) {
+        this.executor = task -> ProxyServer.getInstance().getScheduler().runAsync(plugin, task);
+    }
+
+    /**
+     * @return The API, or null if BungeePlaytimeTracker is not enabled.
+     */
+    public static PlaytimeAPI get() { return INSTANCE; }
+
+    public static void enable(Plugin plugin) { INSTANCE = new PlaytimeAPI(plugin); }
+
+    public static void disable() { INSTANCE = null; }
+
+    /**
+     * Returns the stored playtime of a player.
+     * It is updated when the player leaves the network or uses {@code /playtime}.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return The playtime in seconds, or -1 if the lookup failed.
+     */
+    public CompletableFuture<Integer> getPlaytime(UUID uuid) {
+        return supply(() -> SharePoint.getPlaytimeHandler().getPlayerPlaytime(uuid));
+    }
+
+    /**
+     * Returns the stored playtime of many players in one query per 512 players,
+     * for example of every online player.
+     *
+     * @param uuids The unique identifiers of the players.
+     * @return The playtime in seconds by player, unknown players are missing.
+     * The future completes exceptionally with the {@link SQLException} if the lookup failed.
+     */
+    public CompletableFuture<Map<UUID, Integer>> getPlaytimes(Collection<UUID> uuids) {
+        List<UUID> copy = List.copyOf(uuids);
+        return supply(() -> {
+            try {
+                return SharePoint.getPlaytimeHandler().getPlayerPlaytimes(copy);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Recalculates the playtime of a player from the sessions, including the running session.
+     * This is more expensive than {@link #getPlaytime(UUID)} and should not be called for many players.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return The playtime in seconds, or -1 if the lookup failed.
+     */
+    public CompletableFuture<Integer> getCurrentPlaytime(UUID uuid) {
+        return supply(() -> SharePoint.getPlaytimeHandler().getPlayerCurrentPlaytime(uuid));
+    }
+
+    /**
+     * @param limit The amount of players.
+     * @return The players with the most playtime by name, in order.
+     */
+    public CompletableFuture<Map<String, Integer>> getTopPlayers(int limit) {
+        return supply(() -> {
+            PlayerSnapshot snapshot = SharePoint.getPlayerSnapshot();
+            return snapshot != null ? snapshot.getTopPlayers(limit) : SharePoint.getPlaytimeHandler().getTopPlayers(limit);
+        });
+    }
+
+    /**
+     * The rank is read from the player snapshot, which is refreshed every few minutes.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return The rank of the player starting at 1, or -1 if the player is not ranked yet.
+     */
+    public CompletableFuture<Integer> getRank(UUID uuid) {
+        PlayerSnapshot snapshot = SharePoint.getPlayerSnapshot();
+        return CompletableFuture.completedFuture(snapshot != null ? snapshot.getRank(uuid) : -1);
+    }
+
+    /**
+     * @param uuid The unique identifier of the player.
+     * @return All sessions of the player.
+     */
+    public CompletableFuture<List<PlaytimeHandler.PlaytimeSession>> getSessions(UUID uuid) {
+        return supply(() -> SharePoint.getPlaytimeHandler().getPlaytimeSessions(uuid));
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+}
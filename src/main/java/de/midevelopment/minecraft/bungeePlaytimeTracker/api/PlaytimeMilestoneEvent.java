@@ -0,0 +1,34 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.api;
+
+import net.md_5.bungee.api.plugin.Event;
+
+import java.util.UUID;
+
+/**
+ * Called once when a player reaches a playtime milestone from the {@code milestones} section of the config.
+ * The event is called asynchronously.
+ */
+public class PlaytimeMilestoneEvent extends Event {
+
+    private final UUID playerUuid;
+    private final String milestone;
+    private final long seconds;
+
+    public PlaytimeMilestoneEvent(UUID playerUuid, String milestone, long seconds) {
+        this.playerUuid = playerUuid;
+        this.milestone = milestone;
+        this.seconds = seconds;
+    }
+
+    public UUID getPlayerUuid() { return playerUuid; }
+
+    /**
+     * @return the name of the milestone in the config
+     */
+    public String getMilestone() { return milestone; }
+
+    /**
+     * @return the playtime of the milestone in seconds
+     */
+    public long getSeconds() { return seconds; }
+}
@@ -1,15 +1,36 @@
 package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee;
 
 import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.analytics.ConcurrencySeries;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.api.PlaytimeAPI;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.analytics.NetworkAnalytics;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.commands.PlaytimeCommand;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.commands.PlaytimeStatsCommand;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.milestones.MilestoneEngine;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.sessions.DegradedSessions;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.sessions.SessionFlushScheduler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.ClusterHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.MilestoneHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlayerSnapshot;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlaytimeHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.ServerRegistry;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.listener.PlayerListener;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.utils.ConfigHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.utils.PluginConfig;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.LocaleHandler;
+import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.api.scheduler.ScheduledTask;
 
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -17,10 +38,33 @@ import static de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint.*;
 
 public final class BungeePlaytimeTrackerBungee extends Plugin {
 
+    private static final String RELOAD_PLAYERS_JOB = "reload-players";
+    // the lease is renewed while the players are reloaded, so it expires soon after a crashed proxy
+    private static final int RELOAD_PLAYERS_LEASE_SECONDS = 60;
+    private static final int RELOAD_PLAYERS_RENEW_SECONDS = 20;
+    private static final long SHUTDOWN_FLUSH_MILLIS = 10000;
+    private static final int ANALYTICS_PERSIST_MINUTES = 5;
+    private static final int SESSION_FLUSH_SECONDS = 30;
+    private static final int MAINTENANCE_SECONDS = 30;
+    private static final int SNAPSHOT_MINUTES = 10;
+
     private ConfigHandler configHandler;
-    private ScheduledTask playtimeTask;
-    private static boolean playtimeTaskRunning = false;
-    private boolean printSessionUpdateMessage = true;
+    private ScheduledTask flushTask;
+    private ScheduledTask maintenanceTask;
+    private ScheduledTask analyticsTask;
+    private ScheduledTask concurrencyTask;
+    private ScheduledTask milestoneTask;
+    private ScheduledTask snapshotTask;
+    private ScheduledTask replicaTask;
+    private Path snapshotDirectory;
+    private MilestoneEngine milestoneEngine;
+    private SessionFlushScheduler flushScheduler;
+    private DegradedSessions degradedSessions;
+    private PlayerListener playerListener;
+    private List<String> activeExcludeServers;
+    private volatile boolean recalculationPending;
+    private PluginConfig.DatabaseSettings activeDatabase;
+    private PluginConfig.DatabaseSettings activeReplica;
 
     @Override
     public void onEnable() {
@@ -32,67 +76,261 @@ public final class BungeePlaytimeTrackerBungee extends Plugin {
                 "config.yml",                   // config file name
                 getLogger()                     // Logger for logging messages and errors
         );
-        LocaleHandler.loadLocale( configHandler.get("language"));
-        printSessionUpdateMessage = configHandler.get("print-session-update");
+        PluginConfig config = configHandler.getSnapshot();
+        activeExcludeServers = config.excludeServers();
+        activeDatabase = config.database();
+        activeReplica = config.replica();
+        LocaleHandler.loadLocale(config.language(), config.perPlayerLanguage());
         getDatabase().init(
-                configHandler.get("database.host"),
-                configHandler.get("database.port"),
-                configHandler.get("database.database"),
-                configHandler.get("database.username"),
-                configHandler.get("database.password"),
-                false
+                config.database().host(),
+                config.database().port(),
+                config.database().database(),
+                config.database().username(),
+                config.database().password(),
+                false,
+                config.database().poolSize()
         );
+        if (config.replica() != null) {
+            getDatabase().initReplica(
+                    config.replica().host(),
+                    config.replica().port(),
+                    config.replica().database(),
+                    config.replica().username(),
+                    config.replica().password(),
+                    false,
+                    config.replica().poolSize(),
+                    config.replica().maxLagSeconds()
+            );
+        }
         try {
             getDatabase().createTables();
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
+        // register this proxy, several proxies can share the same database
+        String instanceName = config.instanceId();
+        if (instanceName.isBlank()) {
+            instanceName = UUID.randomUUID().toString();
+            configHandler.set("instance-id", instanceName);
+        }
+        SharePoint.setClusterHandler(new ClusterHandler(getDatabase(), instanceName));
+        int instanceId = SharePoint.getClusterHandler().register();
+
+        // one registry for sessions and statistics, the servers of this proxy are resolved once up front
+        SharePoint.setServerRegistry(new ServerRegistry(getDatabase()));
+        getProxy().getServers().keySet().forEach(SharePoint.getServerRegistry()::getOrCreateId);
         SharePoint.setPlaytimeHandler(new PlaytimeHandler(
                 getDatabase(),
-                configHandler.get("exclude-servers")
+                SharePoint.getServerRegistry(),
+                config.excludeServers(),
+                instanceId,
+                SharePoint.getPlayerNameIndex()
         ));
+        loadSnapshot();
+        // the excluded servers may have been changed while the proxy was offline
+        getProxy().getScheduler().runAsync(this, () -> {
+            if (SharePoint.getPlaytimeHandler().isRecalculationNeeded()) recalculatePlaytimes();
+        });
 
-        if (configHandler.get("reload-players") == Boolean.TRUE) {
-            SharePoint.getPlaytimeHandler().reloadAllPlayers();
+        int recovered = SharePoint.getPlaytimeHandler().recoverOpenSessions();
+        if (recovered > 0) {
+            getLogger().warning("Closed " + recovered + " sessions left open by the last run at their last update.");
+        }
+
+        SharePoint.setNetworkAnalytics(new NetworkAnalytics(getDatabase(), SharePoint.getServerRegistry(), instanceId));
+        SharePoint.getNetworkAnalytics().load();
+        SharePoint.setConcurrencySeries(new ConcurrencySeries(getDatabase(), SharePoint.getServerRegistry(), instanceId));
+
+        if (config.reloadPlayers()) {
+            // only one proxy of the network recalculates the players at the same time
+            if (SharePoint.getClusterHandler().tryAcquireLease(RELOAD_PLAYERS_JOB, RELOAD_PLAYERS_LEASE_SECONDS)) {
+                ScheduledTask renewTask = getProxy().getScheduler().schedule(this, () -> {
+                    if (!SharePoint.getClusterHandler().tryAcquireLease(RELOAD_PLAYERS_JOB, RELOAD_PLAYERS_LEASE_SECONDS)) {
+                        getLogger().warning("Lost the lease for reloading the players, another proxy may reload them at the same time.");
+                    }
+                }, RELOAD_PLAYERS_RENEW_SECONDS, RELOAD_PLAYERS_RENEW_SECONDS, TimeUnit.SECONDS);
+                try {
+                    SharePoint.getPlaytimeHandler().reloadAllPlayers();
+                } finally {
+                    renewTask.cancel();
+                    SharePoint.getClusterHandler().releaseLease(RELOAD_PLAYERS_JOB);
+                }
+            } else {
+                getLogger().info("Players are already reloaded by another proxy, skipping.");
+            }
             configHandler.set("reload-players", false);
-            configHandler.saveConfig();
         }
 
-        getProxy().getPluginManager().registerCommand(this, new PlaytimeCommand());
-        getProxy().getPluginManager().registerListener(this, new PlayerListener(this));
+        milestoneEngine = new MilestoneEngine(new MilestoneHandler(getDatabase()), config.milestones());
+        flushScheduler = new SessionFlushScheduler(this, SESSION_FLUSH_SECONDS);
+        degradedSessions = new DegradedSessions();
+        // the probe that closes the breaker runs on a pool thread, so the stored time is written on its own task
+        getDatabase().getCircuitBreaker().setCloseListener(() -> getProxy().getScheduler().runAsync(this, this::reconcileDegradedSessions));
+
+        configHandler.addChangeListener(this::applyConfig);
+        configHandler.startWatching();
+
+        PlaytimeAPI.enable(this);
+        getProxy().getPluginManager().registerCommand(this, new PlaytimeCommand(this, degradedSessions));
+        getProxy().getPluginManager().registerCommand(this, new PlaytimeStatsCommand(this));
+        playerListener = new PlayerListener(this, milestoneEngine, flushScheduler, degradedSessions);
+        getProxy().getPluginManager().registerListener(this, playerListener);
+
+        // every session is written every 30 seconds, spread over the interval
+        flushTask = getProxy().getScheduler().schedule(this, flushScheduler::tick, 1, 1, TimeUnit.SECONDS);
+        maintenanceTask = getProxy().getScheduler().schedule(this, this::runMaintenanceTask, MAINTENANCE_SECONDS, MAINTENANCE_SECONDS, TimeUnit.SECONDS);
+        analyticsTask = getProxy().getScheduler().schedule(this, () -> SharePoint.getNetworkAnalytics().persist(),
+                ANALYTICS_PERSIST_MINUTES, ANALYTICS_PERSIST_MINUTES, TimeUnit.MINUTES);
+        concurrencyTask = getProxy().getScheduler().schedule(this, this::sampleConcurrency,
+                ConcurrencySeries.SAMPLE_SECONDS, ConcurrencySeries.SAMPLE_SECONDS, TimeUnit.SECONDS);
+        milestoneTask = getProxy().getScheduler().schedule(this, milestoneEngine::tick, 1, 1, TimeUnit.SECONDS);
+        // the first run checks the loaded snapshot against the database
+        snapshotTask = getProxy().getScheduler().schedule(this, this::refreshSnapshot, 0, SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+        if (config.replica() != null) {
+            replicaTask = getProxy().getScheduler().schedule(this, getDatabase()::checkReplica, 1, 1, TimeUnit.SECONDS);
+        }
+    }
 
-        // Run PlaytimeTask every 30 seconds
-        playtimeTask = getProxy().getScheduler().schedule(this, this::runPlaytimeTask, 30, 30, TimeUnit.SECONDS);
+    /**
+     * Applies a changed configuration at runtime.
+     * Database settings need a restart, everything else takes effect at once.
+     */
+    private void applyConfig(PluginConfig config) {
+        LocaleHandler.loadLocale(config.language(), config.perPlayerLanguage());
+        milestoneEngine.setMilestones(config.milestones());
+        if (!config.excludeServers().equals(activeExcludeServers)) {
+            SharePoint.setPlaytimeHandler(new PlaytimeHandler(
+                    getDatabase(),
+                    SharePoint.getServerRegistry(),
+                    config.excludeServers(),
+                    SharePoint.getClusterHandler().getInstanceId(),
+                    SharePoint.getPlayerNameIndex()
+            ));
+            activeExcludeServers = config.excludeServers();
+            getProxy().getScheduler().runAsync(this, this::recalculatePlaytimes);
+        }
+        if (!config.database().equals(activeDatabase) || !Objects.equals(config.replica(), activeReplica)) {
+            getLogger().warning("Database settings were changed, restart the proxy to apply them.");
+        }
+    }
+
+    private void recalculatePlaytimes() {
+        long start = System.currentTimeMillis();
+        int players = SharePoint.getPlaytimeHandler().recalculatePlaytimes();
+        // the totals keep the old excluded servers until the maintenance task could recalculate them
+        recalculationPending = players < 0;
+        if (players < 0) {
+            getLogger().warning("Could not recalculate the playtime for the changed excluded servers, retrying later.");
+            return;
+        }
+        getLogger().info("Recalculated the playtime of " + players + " players for the changed excluded servers in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        refreshSnapshot();
     }
 
     @Override
     public void onDisable() {
-        playtimeTask.cancel();
-        for (UUID uuid : getPlayerSessions().keySet()) {
-            if (SharePoint.hasPlayerSession(uuid)) {
-                SharePoint.getPlaytimeHandler().stopPlaytime(SharePoint.getPlayerSession(uuid));
-                SharePoint.removePlayerSession(uuid);
-            }
+        PlaytimeAPI.disable();
+        configHandler.stopWatching();
+        flushTask.cancel();
+        maintenanceTask.cancel();
+        analyticsTask.cancel();
+        concurrencyTask.cancel();
+        milestoneTask.cancel();
+        snapshotTask.cancel();
+        if (replicaTask != null) replicaTask.cancel();
+        getDatabase().getCircuitBreaker().setCloseListener(null);
+        // sessions counted in memory are stored if the database is back, otherwise their time is lost
+        if (getDatabase().isAvailable()) degradedSessions.reconcile();
+        long lost = degradedSessions.size() + getPlayerSessions().values().stream().filter(session -> session.sessionId() < 0).count();
+        if (lost > 0) {
+            getLogger().warning("Could not store " + lost + " sessions counted while the database was unavailable.");
+        }
+        // close all open sessions at once, whatever is left is recovered on the next start
+        int open = getPlayerSessions().size();
+        int closed = SharePoint.getPlaytimeHandler().stopPlaytimes(getPlayerSessionIds(), SHUTDOWN_FLUSH_MILLIS);
+        if (closed < open) {
+            getLogger().warning("Could only close " + closed + " of " + open + " sessions in time.");
         }
+        getPlayerSessions().forEach((uuid, session) ->
+                SharePoint.getNetworkAnalytics().recordSessionClose(uuid, session.serverName(), session.getSeconds()));
+        SharePoint.getNetworkAnalytics().persist();
+        SharePoint.getConcurrencySeries().flush();
+        SharePoint.clearPlayerSessions();
+        refreshSnapshot();
     }
 
-    public void runPlaytimeTask() {
-        getProxy().getScheduler().runAsync(this, () -> {
-            if (isPlaytimeTaskRunning() || getProxy().getOnlineCount() < 1) return;
-            setPlaytimeTaskRunning(true);
-            if (printSessionUpdateMessage) getLogger().info("Update Playtime-Sessions...");
-            try {
-                for (UUID uuid : getPlayerSessions().keySet()) {
-                    if (SharePoint.hasPlayerSession(uuid)) {
-                        SharePoint.getPlaytimeHandler().updatePlaytime(SharePoint.getPlayerSession(uuid));
-                    }
-                }
-            } finally {
-                setPlaytimeTaskRunning(false);
-            }
+    /**
+     * Maps the snapshot of the last run, so the leaderboard and the player names are available at once.
+     */
+    private void loadSnapshot() {
+        snapshotDirectory = getDataFolder().toPath();
+        try {
+            PlayerSnapshot snapshot = PlayerSnapshot.openNewest(snapshotDirectory);
+            snapshot.forEach(player -> {
+                if (!player.name().isEmpty()) SharePoint.getPlayerNameIndex().put(player.uuid(), player.name());
+            });
+            SharePoint.setPlayerSnapshot(snapshot);
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            getLogger().warning("Could not load the player snapshot, waiting for the database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads all players from the database, updates the name index and replaces the snapshot.
+     */
+    private synchronized void refreshSnapshot() {
+        long versionStamp = System.currentTimeMillis();
+        PlayerSnapshot previous = SharePoint.getPlayerSnapshot();
+        PlayerSnapshot.Builder players = new PlayerSnapshot.Builder();
+        int[] changed = {0};
+        boolean read = SharePoint.getPlaytimeHandler().getPlayerTotals(player -> {
+            players.add(player);
+            if (!player.name().isEmpty()) SharePoint.getPlayerNameIndex().put(player.uuid(), player.name());
+            SharePoint.getKnownPlayers().put(player.uuid(), player.name());
+            if (previous != null && !player.equals(previous.find(player.uuid()))) changed[0]++;
         });
+        if (!read) return;
+        try {
+            SharePoint.setPlayerSnapshot(PlayerSnapshot.open(PlayerSnapshot.write(snapshotDirectory, versionStamp, players)));
+        } catch (IOException e) {
+            getLogger().warning("Could not write the player snapshot: " + e.getMessage());
+            return;
+        }
+        // the previous snapshot may still be read by a running lookup, a file that is still mapped is deleted later
+        PlayerSnapshot.deleteOlder(snapshotDirectory, versionStamp);
+        if (configHandler.getSnapshot().printSessionUpdate() && previous != null) {
+            getLogger().info("Player snapshot refreshed, " + changed[0] + " of " + players.size() + " players changed since "
+                    + Instant.ofEpochMilli(previous.getVersionStamp()) + ".");
+        }
+    }
+
+    private void reconcileDegradedSessions() {
+        int stored = degradedSessions.reconcile();
+        if (stored > 0) getLogger().info("Stored " + stored + " sessions counted while the database was unavailable.");
+        // players that joined while the database was unavailable could not read their stored playtime
+        getPlayerSessions().forEach((uuid, session) -> playerListener.trackMilestones(uuid, session.serverName()));
     }
-    private static boolean isPlaytimeTaskRunning() { return playtimeTaskRunning; }
-    private static void setPlaytimeTaskRunning(boolean running) { playtimeTaskRunning = running; }
+
+    private void runMaintenanceTask() {
+        SharePoint.getClusterHandler().heartbeat();
+        // picks up what the last reconcile could not store
+        if (!getDatabase().getCircuitBreaker().isOpen()) reconcileDegradedSessions();
+        if (recalculationPending && !getDatabase().getCircuitBreaker().isOpen()) recalculatePlaytimes();
+        int flushed = flushScheduler.getAndResetFlushed();
+        if (configHandler.getSnapshot().printSessionUpdate()) {
+            getLogger().info("Updated " + flushed + " playtime sessions, statements: " + getDatabase().getStatementStats());
+        }
+    }
+
+    private void sampleConcurrency() {
+        Map<String, Integer> online = new HashMap<>();
+        for (ServerInfo server : getProxy().getServers().values()) {
+            online.put(server.getName(), server.getPlayers().size());
+        }
+        SharePoint.getConcurrencySeries().sample(online, System.currentTimeMillis() / 1000);
+    }
+
 }
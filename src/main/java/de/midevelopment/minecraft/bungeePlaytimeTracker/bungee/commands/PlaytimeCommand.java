@@ -1,36 +1,84 @@
 package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.commands;
 
 import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.sessions.DegradedSessions;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlayerSnapshot;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlaytimeHandler;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.LocaleHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.MessageKey;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.PlayerNameIndex;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.TimeConverter;
 import net.md_5.bungee.api.ChatColor;
 import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.chat.ComponentBuilder;
 import net.md_5.bungee.api.chat.TextComponent;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.api.plugin.TabExecutor;
 
+import java.sql.Timestamp;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 public class PlaytimeCommand extends Command implements TabExecutor {
-    private final Map<UUID, Long> lastUsage = new HashMap<>();
-    private final Map<UUID, Integer> playtimeCache = new HashMap<>();
+    // the lookups run on worker threads, keyed by the player using the command
+    private final Map<UUID, Long> lastUsage = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> playtimeCache = new ConcurrentHashMap<>();
     private static final long COOLDOWN_TIME = TimeUnit.MINUTES.toMillis(1);
+    private static final int HISTORY_DEFAULT_DAYS = 7;
+    private static final int HISTORY_MAX_DAYS = 90;
+    private static final int HISTORY_MAX_LINES = 10;
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private static final DateTimeFormatter HISTORY_DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM. HH:mm");
+    private static final int TAB_COMPLETE_LIMIT = 20;
+    private static final int MAX_RUNNING_LOOKUPS = 8;
+    private static final long LOOKUP_TIMEOUT_SECONDS = 5;
 
-    public PlaytimeCommand() {
+    private final Executor executor;
+    private final Semaphore runningLookups = new Semaphore(MAX_RUNNING_LOOKUPS);
+    private final DegradedSessions degradedSessions;
+
+    public PlaytimeCommand(Plugin plugin, DegradedSessions degradedSessions) {
         super("playtime");
+        this.executor = task -> ProxyServer.getInstance().getScheduler().runAsync(plugin, task);
+        this.degradedSessions = degradedSessions;
     }
 
     @Override
     public void execute(CommandSender commandSender, String[] strings) {
+        // "/playtime player <name>" also finds players named like a subcommand
+        if (strings.length > 0 && strings[0].equalsIgnoreCase("player")) {
+            if (strings.length > 1) {
+                showPlayer(commandSender, strings[1]);
+            } else {
+                Locale locale = commandSender instanceof ProxiedPlayer player ? player.getLocale() : null;
+                commandSender.sendMessage(new TextComponent(ChatColor.RED + LocaleHandler.get(MessageKey.PLAYER_USAGE, locale)));
+            }
+            return;
+        }
+        // "/playtime <name>" works for offline players and the console too
+        if (strings.length > 0 && !strings[0].equalsIgnoreCase("leaderboard") && !strings[0].equalsIgnoreCase("history")) {
+            showPlayer(commandSender, strings[0]);
+            return;
+        }
+
         if (!(commandSender instanceof ProxiedPlayer player)) {
             commandSender.sendMessage(
                     new TextComponent(
-                            ChatColor.RED + LocaleHandler.get("player_only")
+                            ChatColor.RED + LocaleHandler.get(MessageKey.PLAYER_ONLY)
                     )
             );
             return;
@@ -38,32 +86,116 @@ public class PlaytimeCommand extends Command implements TabExecutor {
 
         // Subbefehl "leaderboard" verarbeiten
         if (strings.length > 0 && strings[0].equalsIgnoreCase("leaderboard")) {
-            displayLeaderboard(player);
+            lookup(player, player.getLocale(), this::getTopPlayers, topPlayers -> displayLeaderboard(player, topPlayers));
             return;
         }
 
+        if (strings.length > 0 && strings[0].equalsIgnoreCase("history")) {
+            int days = HISTORY_DEFAULT_DAYS;
+            if (strings.length > 1) {
+                try {
+                    days = Math.max(1, Math.min(HISTORY_MAX_DAYS, Integer.parseInt(strings[1])));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            int range = days;
+            lookup(player, player.getLocale(), () -> getHistory(player.getUniqueId(), range),
+                    history -> displayHistory(player, range, history));
+            return;
+        }
+
+        lookup(player, player.getLocale(), () -> getOwnPlaytime(player),
+                playtime -> displayPlaytime(player, player.getLocale(), null, playtime));
+    }
+
+    private void showPlayer(CommandSender sender, String playerName) {
+        Locale locale = sender instanceof ProxiedPlayer player ? player.getLocale() : null;
+        PlayerNameIndex.Entry entry = SharePoint.getPlayerNameIndex().get(playerName);
+        if (entry == null) {
+            sender.sendMessage(new TextComponent(ChatColor.RED + LocaleHandler.get(MessageKey.PLAYER_NOT_FOUND, locale)));
+            return;
+        }
+        lookup(sender, locale, () -> getStoredPlaytime(entry.uuid()),
+                playtime -> displayPlaytime(sender, locale, entry.name(), playtime));
+    }
+
+    /**
+     * Runs the database part of a command on a worker thread and renders the result once it is done,
+     * so a slow database never blocks the network thread that executes the command.
+     * At most {@link #MAX_RUNNING_LOOKUPS} lookups run at once, the sender is told to retry if there are more,
+     * or if the lookup takes longer than {@link #LOOKUP_TIMEOUT_SECONDS}.
+     */
+    private <T> void lookup(CommandSender sender, Locale locale, Supplier<T> lookup, Consumer<T> render) {
+        if (!runningLookups.tryAcquire()) {
+            sender.sendMessage(new TextComponent(ChatColor.RED + LocaleHandler.get(MessageKey.COMMAND_BUSY, locale)));
+            return;
+        }
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                // the permit is held until the lookup really ends, also after a timeout
+                try {
+                    return lookup.get();
+                } finally {
+                    runningLookups.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            // the scheduler did not take the task, for example while the plugin is disabled
+            runningLookups.release();
+            sender.sendMessage(new TextComponent(ChatColor.RED + LocaleHandler.get(MessageKey.COMMAND_BUSY, locale)));
+            return;
+        }
+        future.orTimeout(LOOKUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        sender.sendMessage(new TextComponent(ChatColor.RED + LocaleHandler.get(MessageKey.COMMAND_BUSY, locale)));
+                        return;
+                    }
+                    render.accept(result);
+                });
+    }
+
+    /**
+     * Calculates the playtime of the player from the sessions, at most once per {@link #COOLDOWN_TIME}.
+     */
+    private int getOwnPlaytime(ProxiedPlayer player) {
         UUID playerUUID = player.getUniqueId();
+        // answer from memory instead of waiting for a database that is known to be down
+        if (!SharePoint.getDatabase().isAvailable()) return degradedSessions.getPlaytime(playerUUID);
         long currentTime = System.currentTimeMillis();
-        int playtime;
-
         if (lastUsage.containsKey(playerUUID) &&
                 currentTime - lastUsage.get(playerUUID) < COOLDOWN_TIME &&
                 playtimeCache.containsKey(playerUUID)) {
-            playtime = playtimeCache.get(playerUUID);
-        } else {
-            playtime = SharePoint.getPlaytimeHandler().getPlayerCurrentPlaytime(playerUUID);
-            playtimeCache.put(playerUUID, playtime);
-            lastUsage.put(playerUUID, currentTime);
+            return playtimeCache.get(playerUUID);
         }
+        int playtime = SharePoint.getPlaytimeHandler().getPlayerCurrentPlaytime(playerUUID);
+        playtimeCache.put(playerUUID, playtime);
+        lastUsage.put(playerUUID, currentTime);
+        return playtime;
+    }
+
+    /**
+     * Reads the stored playtime of another player without calculating it, so looking up many players
+     * does not run a calculation for each of them. It is as recent as the last calculation of the player.
+     */
+    private int getStoredPlaytime(UUID playerUUID) {
+        int playtime = SharePoint.getDatabase().isAvailable() ? SharePoint.getPlaytimeHandler().getPlayerPlaytime(playerUUID) : -1;
+        return playtime >= 0 ? playtime : degradedSessions.getPlaytime(playerUUID);
+    }
 
+    /**
+     * @param playerName the name of the player whose playtime is shown, or null for the own playtime
+     */
+    private void displayPlaytime(CommandSender sender, Locale locale, String playerName, int playtime) {
         Duration duration = TimeConverter.convertSecondsToDuration(playtime);
-        String prettyTime = TimeConverter.getDetailedTimeString(duration);
+        String prettyTime = TimeConverter.getDetailedTimeString(duration, locale);
 
         TextComponent line = new TextComponent("——————————————");
         line.setColor(ChatColor.DARK_GRAY);
         line.setStrikethrough(true);
 
-        TextComponent title = new TextComponent(" ⏱ " + LocaleHandler.get("playtime"));
+        TextComponent title = new TextComponent(" ⏱ " + LocaleHandler.get(MessageKey.PLAYTIME, locale));
         title.setColor(ChatColor.of("#55FFAA"));
         title.setBold(true);
 
@@ -74,19 +206,31 @@ public class PlaytimeCommand extends Command implements TabExecutor {
         value.setColor(ChatColor.of("#00D4FF"));
         value.setBold(true);
 
-        player.sendMessage(line);
-        player.sendMessage(new ComponentBuilder()
+        ComponentBuilder message = new ComponentBuilder()
                 .append(title)
-                .append(sep)
+                .append(sep);
+        if (playerName != null) {
+            TextComponent name = new TextComponent(playerName);
+            name.setColor(ChatColor.WHITE);
+            message.append(name).append(sep);
+        }
+
+        sender.sendMessage(line);
+        sender.sendMessage(message
                 .append(value)
                 .create());
-        player.sendMessage(line);
+        sender.sendMessage(line);
     }
 
-    private void displayLeaderboard(ProxiedPlayer player) {
-        Map<String, Integer> topPlayers = SharePoint.getPlaytimeHandler().getTopPlayers(10);
+    private Map<String, Integer> getTopPlayers() {
+        // the snapshot is refreshed every few minutes, which is recent enough for the leaderboard
+        PlayerSnapshot snapshot = SharePoint.getPlayerSnapshot();
+        return snapshot != null ? snapshot.getTopPlayers(10) : SharePoint.getPlaytimeHandler().getTopPlayers(10);
+    }
 
-        TextComponent header = new TextComponent("⏱ " + LocaleHandler.get("playtime_leaderboard"));
+    private void displayLeaderboard(ProxiedPlayer player, Map<String, Integer> topPlayers) {
+
+        TextComponent header = new TextComponent("⏱ " + LocaleHandler.get(MessageKey.PLAYTIME_LEADERBOARD, player.getLocale()));
         header.setColor(ChatColor.of("#55FFAA"));
         header.setBold(true);
 
@@ -103,7 +247,7 @@ public class PlaytimeCommand extends Command implements TabExecutor {
             String playerName = entry.getKey();
 
             Duration duration = TimeConverter.convertSecondsToDuration(entry.getValue());
-            String prettyTime = TimeConverter.convertDurationToTimeString(duration);
+            String prettyTime = TimeConverter.convertDurationToTimeString(duration, player.getLocale());
 
             TextComponent rankComp = new TextComponent("#" + rank + " ");
             rankComp.setColor(ChatColor.GRAY);
@@ -127,6 +271,88 @@ public class PlaytimeCommand extends Command implements TabExecutor {
         player.sendMessage(line);
     }
 
+    /**
+     * @return the history, or null on a database error
+     */
+    private History getHistory(UUID uuid, int days) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        PlaytimeHandler handler = SharePoint.getPlaytimeHandler();
+        List<PlaytimeHandler.PlaytimeSession> sessions = new ArrayList<>();
+        long[] totalSeconds = {0};
+        int count = handler.getPlaytimeSessions(
+                uuid,
+                Timestamp.valueOf(now.minusDays(days)),
+                Timestamp.valueOf(now.plusMinutes(1)),
+                HISTORY_PAGE_SIZE,
+                session -> {
+                    if (sessions.size() < HISTORY_MAX_LINES) sessions.add(session);
+                    // the total matches the playtime, which does not count the excluded servers
+                    if (!handler.isExcludedServer(session.serverName)) totalSeconds[0] += session.diff_time;
+                }
+        );
+        return count < 0 ? null : new History(sessions, totalSeconds[0]);
+    }
+
+    private void displayHistory(ProxiedPlayer player, int days, History history) {
+        if (history == null) {
+            player.sendMessage(new TextComponent(ChatColor.RED + LocaleHandler.get(MessageKey.HISTORY_ERROR, player.getLocale())));
+            return;
+        }
+        List<PlaytimeHandler.PlaytimeSession> sessions = history.sessions();
+
+        TextComponent header = new TextComponent("⏱ " + LocaleHandler.get(MessageKey.PLAYTIME_HISTORY, player.getLocale()) + " (" + days + " " +
+                (days == 1 ? LocaleHandler.get(MessageKey.DAY, player.getLocale()) : LocaleHandler.get(MessageKey.DAYS, player.getLocale())) + ")");
+        header.setColor(ChatColor.of("#55FFAA"));
+        header.setBold(true);
+
+        TextComponent line = new TextComponent("——————————————————————");
+        line.setColor(ChatColor.DARK_GRAY);
+        line.setStrikethrough(true);
+
+        player.sendMessage(line);
+        player.sendMessage(header);
+        player.sendMessage(line);
+
+        if (sessions.isEmpty()) {
+            TextComponent empty = new TextComponent(LocaleHandler.get(MessageKey.HISTORY_EMPTY, player.getLocale()));
+            empty.setColor(ChatColor.GRAY);
+            player.sendMessage(empty);
+        }
+
+        for (PlaytimeHandler.PlaytimeSession session : sessions) {
+            TextComponent dateComp = new TextComponent(session.start_time.toLocalDateTime().format(HISTORY_DATE_FORMAT) + " ");
+            dateComp.setColor(ChatColor.GRAY);
+
+            TextComponent serverComp = new TextComponent(session.serverName);
+            serverComp.setColor(ChatColor.WHITE);
+
+            TextComponent timeComp = new TextComponent(" - " + TimeConverter.convertDurationToTimeString(
+                    TimeConverter.convertSecondsToDuration(session.diff_time), player.getLocale()));
+            timeComp.setColor(ChatColor.of("#00D4FF"));
+
+            player.sendMessage(new ComponentBuilder()
+                    .append(dateComp)
+                    .append(serverComp)
+                    .append(timeComp)
+                    .create());
+        }
+
+        TextComponent totalComp = new TextComponent(LocaleHandler.get(MessageKey.HISTORY_TOTAL, player.getLocale()) + " • ");
+        totalComp.setColor(ChatColor.GRAY);
+
+        TextComponent totalValue = new TextComponent(TimeConverter.convertDurationToTimeString(
+                TimeConverter.convertSecondsToDuration((int) history.totalSeconds()), player.getLocale()));
+        totalValue.setColor(ChatColor.of("#00D4FF"));
+        totalValue.setBold(true);
+
+        player.sendMessage(line);
+        player.sendMessage(new ComponentBuilder()
+                .append(totalComp)
+                .append(totalValue)
+                .create());
+        player.sendMessage(line);
+    }
+
     @Override
     public Iterable<String> onTabComplete(CommandSender sender, String[] args) {
         if (args.length == 1) {
@@ -136,10 +362,27 @@ public class PlaytimeCommand extends Command implements TabExecutor {
             if ("leaderboard".startsWith(input)) {
                 completions.add("leaderboard");
             }
+            if ("history".startsWith(input)) {
+                completions.add("history");
+            }
+            if ("player".startsWith(input)) {
+                completions.add("player");
+            }
+            completions.addAll(SharePoint.getPlayerNameIndex().complete(input, TAB_COMPLETE_LIMIT));
 
             return completions;
         }
+        if (args.length == 2 && args[0].equalsIgnoreCase("player")) {
+            return SharePoint.getPlayerNameIndex().complete(args[1].toLowerCase(), TAB_COMPLETE_LIMIT);
+        }
 
         return Collections.emptyList();
     }
-}
\ No newline at end of file
+
+    /**
+     * @param sessions     the newest sessions, at most {@link #HISTORY_MAX_LINES}
+     * @param totalSeconds the playtime of all sessions in the range, without the excluded servers
+     */
+    private record History(List<PlaytimeHandler.PlaytimeSession> sessions, long totalSeconds) {
+    }
+}
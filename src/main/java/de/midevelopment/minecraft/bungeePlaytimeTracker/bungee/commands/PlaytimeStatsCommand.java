@@ -0,0 +1,133 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.commands;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.analytics.HyperLogLog;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.analytics.NetworkAnalytics;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.analytics.SessionLengthHistogram;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.LocaleHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.MessageKey;
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.ComponentBuilder;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.Plugin;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Shows the unique players and session lengths of the whole network, estimated from the sketches of all proxies.
+ */
+public class PlaytimeStatsCommand extends Command {
+    private static final int STATS_DEFAULT_DAYS = 7;
+    private static final int STATS_MAX_DAYS = 90;
+    private static final DateTimeFormatter STATS_DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final Plugin plugin;
+
+    public PlaytimeStatsCommand(Plugin plugin) {
+        super("playtimestats", "playtimetracker.stats");
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(CommandSender commandSender, String[] strings) {
+        int days = STATS_DEFAULT_DAYS;
+        if (strings.length > 0) {
+            try {
+                days = Math.max(1, Math.min(STATS_MAX_DAYS, Integer.parseInt(strings[0])));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        int range = days;
+        // merging the sketches of other proxies needs the database
+        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> displayStats(commandSender, range));
+    }
+
+    private void displayStats(CommandSender sender, int days) {
+        Locale locale = sender instanceof ProxiedPlayer player ? player.getLocale() : null;
+        LocalDate to = NetworkAnalytics.today();
+        LocalDate from = to.minusDays(days - 1);
+        Map<NetworkAnalytics.SketchKey, NetworkAnalytics.DailySketch> sketches = SharePoint.getNetworkAnalytics().query(from, to);
+
+        HyperLogLog networkUniques = new HyperLogLog();
+        SessionLengthHistogram networkLengths = new SessionLengthHistogram();
+        Map<LocalDate, Long> uniquesByDay = new TreeMap<>(Comparator.reverseOrder());
+        Map<Integer, HyperLogLog> uniquesByServer = new HashMap<>();
+        for (Map.Entry<NetworkAnalytics.SketchKey, NetworkAnalytics.DailySketch> entry : sketches.entrySet()) {
+            NetworkAnalytics.DailySketch sketch = entry.getValue();
+            if (entry.getKey().serverId() == NetworkAnalytics.NETWORK) {
+                networkUniques.merge(sketch.getUniques());
+                networkLengths.merge(sketch.getLengths());
+                uniquesByDay.put(entry.getKey().day(), sketch.getUniques().estimate());
+            } else {
+                uniquesByServer.computeIfAbsent(entry.getKey().serverId(), id -> new HyperLogLog()).merge(sketch.getUniques());
+            }
+        }
+
+        TextComponent header = new TextComponent("⏱ " + LocaleHandler.get(MessageKey.STATS_TITLE, locale) + " (" + days + " " +
+                (days == 1 ? LocaleHandler.get(MessageKey.DAY, locale) : LocaleHandler.get(MessageKey.DAYS, locale)) + ")");
+        header.setColor(ChatColor.of("#55FFAA"));
+        header.setBold(true);
+
+        TextComponent line = new TextComponent("——————————————————————");
+        line.setColor(ChatColor.DARK_GRAY);
+        line.setStrikethrough(true);
+
+        sender.sendMessage(line);
+        sender.sendMessage(header);
+        sender.sendMessage(line);
+
+        sender.sendMessage(row(LocaleHandler.get(MessageKey.STATS_UNIQUE_PLAYERS, locale), String.valueOf(networkUniques.estimate())));
+        for (Map.Entry<LocalDate, Long> entry : uniquesByDay.entrySet()) {
+            sender.sendMessage(row("  " + entry.getKey().format(STATS_DATE_FORMAT), String.valueOf(entry.getValue())));
+        }
+
+        Map<Integer, Integer> peaks = SharePoint.getConcurrencySeries().getPeaks(
+                from.atStartOfDay().toInstant(ZoneOffset.UTC), to.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        sender.sendMessage(title(LocaleHandler.get(MessageKey.STATS_SERVERS, locale)));
+        List<Map.Entry<Integer, Long>> servers = new ArrayList<>();
+        for (Map.Entry<Integer, HyperLogLog> entry : uniquesByServer.entrySet()) {
+            servers.add(Map.entry(entry.getKey(), entry.getValue().estimate()));
+        }
+        servers.sort(Map.Entry.<Integer, Long>comparingByValue().reversed());
+        for (Map.Entry<Integer, Long> server : servers) {
+            String name = SharePoint.getNetworkAnalytics().getServerRegistry().getName(server.getKey());
+            sender.sendMessage(row("  " + (name == null ? "#" + server.getKey() : name), server.getValue() + " (" +
+                    LocaleHandler.get(MessageKey.STATS_PEAK, locale) + " " + peaks.getOrDefault(server.getKey(), 0) + ")"));
+        }
+
+        sender.sendMessage(title(LocaleHandler.get(MessageKey.STATS_SESSION_LENGTHS, locale)));
+        long[] counts = networkLengths.getCounts();
+        long total = Math.max(1, networkLengths.getTotal());
+        for (int i = 0; i < SessionLengthHistogram.BUCKETS; i++) {
+            sender.sendMessage(row("  " + SessionLengthHistogram.LABELS[i], counts[i] + " (" + (counts[i] * 100 / total) + "%)"));
+        }
+        sender.sendMessage(line);
+    }
+
+    private static TextComponent title(String text) {
+        TextComponent title = new TextComponent(text);
+        title.setColor(ChatColor.of("#55FFAA"));
+        return title;
+    }
+
+    private static BaseComponent[] row(String label, String value) {
+        TextComponent labelComp = new TextComponent(label + " • ");
+        labelComp.setColor(ChatColor.GRAY);
+
+        TextComponent valueComp = new TextComponent(value);
+        valueComp.setColor(ChatColor.of("#00D4FF"));
+
+        return new ComponentBuilder()
+                .append(labelComp)
+                .append(valueComp)
+                .create();
+    }
+}
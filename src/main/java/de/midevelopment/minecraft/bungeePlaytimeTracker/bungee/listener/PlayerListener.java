@@ -1,6 +1,9 @@
 package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.listener;
 
 import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.milestones.MilestoneEngine;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.sessions.DegradedSessions;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.sessions.SessionFlushScheduler;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.event.PlayerDisconnectEvent;
@@ -10,12 +13,20 @@ import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.event.EventHandler;
 
+import java.util.UUID;
+
 public class PlayerListener implements Listener {
 
     private final Plugin plugin;
+    private final MilestoneEngine milestoneEngine;
+    private final SessionFlushScheduler flushScheduler;
+    private final DegradedSessions degradedSessions;
 
-    public PlayerListener(Plugin plugin) {
+    public PlayerListener(Plugin plugin, MilestoneEngine milestoneEngine, SessionFlushScheduler flushScheduler, DegradedSessions degradedSessions) {
         this.plugin = plugin;
+        this.milestoneEngine = milestoneEngine;
+        this.flushScheduler = flushScheduler;
+        this.degradedSessions = degradedSessions;
     }
 
     @EventHandler
@@ -23,7 +34,13 @@ public class PlayerListener implements Listener {
         ProxiedPlayer player = event.getPlayer();
 
         ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            SharePoint.getPlaytimeHandler().registerPlayer(player.getUniqueId(), player.getName());
+            // most players log in with the name that is already stored, those need no write
+            if (SharePoint.getKnownPlayers().isKnown(player.getUniqueId(), player.getName())) return;
+            if (SharePoint.getDatabase().isAvailable() && SharePoint.getPlaytimeHandler().registerPlayer(player.getUniqueId(), player.getName())) {
+                SharePoint.getKnownPlayers().put(player.getUniqueId(), player.getName());
+            } else {
+                degradedSessions.registerLater(player.getUniqueId(), player.getName());
+            }
         });
     }
 
@@ -31,9 +48,11 @@ public class PlayerListener implements Listener {
     public void playerDisconnectEvent(PlayerDisconnectEvent event) {
         ProxiedPlayer player = event.getPlayer();
         ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            SharePoint.getPlaytimeHandler().stopPlaytime(SharePoint.getPlayerSession(player.getUniqueId()));
-            SharePoint.removePlayerSession(player.getUniqueId());
-            SharePoint.getPlaytimeHandler().getPlayerCurrentPlaytime(event.getPlayer().getUniqueId());
+            // ended here, so it is ordered like the start in the async connect task
+            endSession(player);
+            if (SharePoint.getDatabase().isAvailable()) {
+                SharePoint.getPlaytimeHandler().getPlayerCurrentPlaytime(event.getPlayer().getUniqueId());
+            }
         });
     }
 
@@ -41,12 +60,54 @@ public class PlayerListener implements Listener {
     public void playerServerSwitchEvent(ServerConnectedEvent event) {
         ProxiedPlayer player = event.getPlayer();
         ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> {
-            if (SharePoint.hasPlayerSession(player.getUniqueId())) {
-                SharePoint.getPlaytimeHandler().stopPlaytime(SharePoint.getPlayerSession(player.getUniqueId()));
+            SharePoint.OpenSession previous = SharePoint.getOpenSession(player.getUniqueId());
+            if (previous != null) {
+                stopSession(player, previous);
+                SharePoint.getNetworkAnalytics().recordSessionClose(player.getUniqueId(), previous.serverName(), previous.getSeconds());
             }
-            int sessionId = SharePoint.getPlaytimeHandler().startPlaytime(player.getUniqueId(), event.getServer().getInfo().getName());
-            SharePoint.setPlayerSession(player.getUniqueId(), sessionId);
+            String serverName = event.getServer().getInfo().getName();
+            // if the session could not be started it is counted in memory with the id -1,
+            // also when the breaker let another call through as the probe
+            int sessionId = SharePoint.getDatabase().isAvailable()
+                    ? SharePoint.getPlaytimeHandler().startPlaytime(player.getUniqueId(), serverName) : -1;
+            SharePoint.setPlayerSession(player.getUniqueId(), sessionId, serverName);
+            flushScheduler.add(player.getUniqueId());
+
+            trackMilestones(player.getUniqueId(), serverName);
+            // the connection closes before the disconnect task is scheduled, so a player who left
+            // while this task ran is seen here, and the session, flush entry and milestones do not leak
+            if (!player.isConnected()) endSession(player);
         });
     }
 
+    /**
+     * Ends everything that runs for an online player. Safe to call twice, only the first call stops the session.
+     */
+    private void endSession(ProxiedPlayer player) {
+        milestoneEngine.untrack(player.getUniqueId());
+        flushScheduler.remove(player.getUniqueId());
+        SharePoint.OpenSession session = SharePoint.removePlayerSession(player.getUniqueId());
+        if (session != null) {
+            stopSession(player, session);
+            SharePoint.getNetworkAnalytics().recordSessionClose(player.getUniqueId(), session.serverName(), session.getSeconds());
+        }
+    }
+
+    private void stopSession(ProxiedPlayer player, SharePoint.OpenSession session) {
+        if (session.sessionId() < 0) degradedSessions.close(player.getUniqueId(), session);
+        else SharePoint.getPlaytimeHandler().stopPlaytime(session.sessionId());
+    }
+
+    /**
+     * Starts the milestones of a player once the stored playtime could be read.
+     * Players that joined while the database was unavailable are tracked after the reconcile.
+     */
+    public void trackMilestones(UUID uuid, String serverName) {
+        if (milestoneEngine.isEnabled() && !milestoneEngine.isTracked(uuid)) {
+            int playtime = SharePoint.getDatabase().isAvailable() ? SharePoint.getPlaytimeHandler().getPlayerPlaytime(uuid) : -1;
+            if (playtime < 0) return;
+            milestoneEngine.track(uuid, playtime);
+        }
+        milestoneEngine.setCounting(uuid, !SharePoint.getPlaytimeHandler().isExcludedServer(serverName));
+    }
 }
@@ -0,0 +1,176 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.milestones;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.api.PlaytimeMilestoneEvent;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.utils.PluginConfig;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.MilestoneHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.TimingWheel;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects when online players reach their playtime milestones.
+ * Instead of comparing every player with every milestone periodically, the time a player crosses their next
+ * milestone is calculated once and scheduled in a {@link TimingWheel}. The schedule only changes when the player
+ * starts or stops collecting playtime, so every tick only touches the players whose milestone is due.
+ */
+public class MilestoneEngine {
+
+    private static final long MARK_RETRY_SECONDS = 30;
+
+    private final MilestoneHandler milestoneHandler;
+    private final TimingWheel<UUID> wheel = new TimingWheel<>(nowSeconds());
+    private final Map<UUID, Progress> players = new ConcurrentHashMap<>();
+    private volatile List<PluginConfig.Milestone> milestones;
+
+    public MilestoneEngine(MilestoneHandler milestoneHandler, List<PluginConfig.Milestone> milestones) {
+        this.milestoneHandler = milestoneHandler;
+        this.milestones = milestones;
+    }
+
+    public boolean isEnabled() { return !milestones.isEmpty(); }
+
+    public boolean isTracked(UUID uuid) { return players.containsKey(uuid); }
+
+    /**
+     * Starts tracking a player, the player does not collect playtime until {@link #setCounting} is called.
+     *
+     * @param uuid            The unique identifier of the player.
+     * @param playtimeSeconds The playtime of the player when joining.
+     */
+    public void track(UUID uuid, long playtimeSeconds) {
+        Set<String> reached = milestoneHandler.getReached(uuid);
+        // the milestones are marked idempotently, so trying one twice after an error does not reward twice
+        players.putIfAbsent(uuid, new Progress(playtimeSeconds, reached == null ? new HashSet<>() : reached));
+    }
+
+    /**
+     * Starts or stops the playtime of a player, for example when switching to an excluded server.
+     */
+    public void setCounting(UUID uuid, boolean counting) {
+        Progress progress = players.get(uuid);
+        if (progress == null) return;
+        synchronized (progress) {
+            long now = nowSeconds();
+            if (counting && progress.countingSince < 0) {
+                progress.countingSince = now;
+            } else if (!counting && progress.countingSince >= 0) {
+                progress.seconds = progress.played(now);
+                progress.countingSince = -1;
+            }
+            reschedule(uuid, progress, now);
+        }
+    }
+
+    public void untrack(UUID uuid) {
+        Progress progress = players.remove(uuid);
+        if (progress == null) return;
+        synchronized (progress) {
+            wheel.cancel(progress.timer);
+        }
+    }
+
+    /**
+     * Replaces the milestones, the next milestone of every tracked player is scheduled again.
+     */
+    public void setMilestones(List<PluginConfig.Milestone> milestones) {
+        this.milestones = milestones;
+        long now = nowSeconds();
+        players.forEach((uuid, progress) -> {
+            synchronized (progress) {
+                reschedule(uuid, progress, now);
+            }
+        });
+    }
+
+    /**
+     * Advances the wheel and rewards the players whose milestone is due, called every second.
+     */
+    public void tick() {
+        long now = nowSeconds();
+        for (UUID uuid : wheel.advance(now)) {
+            Progress progress = players.get(uuid);
+            if (progress == null) continue;
+            List<PluginConfig.Milestone> due = new ArrayList<>();
+            synchronized (progress) {
+                long played = progress.played(now);
+                for (PluginConfig.Milestone milestone : milestones) {
+                    if (milestone.seconds() > played) break;
+                    if (progress.reached.add(milestone.name())) due.add(milestone);
+                }
+                reschedule(uuid, progress, now);
+            }
+            for (PluginConfig.Milestone milestone : due) reach(uuid, milestone);
+        }
+    }
+
+    private void reschedule(UUID uuid, Progress progress, long now) {
+        wheel.cancel(progress.timer);
+        progress.timer = null;
+        if (progress.countingSince < 0) return;
+        long played = progress.played(now);
+        for (PluginConfig.Milestone milestone : milestones) {
+            if (progress.reached.contains(milestone.name())) continue;
+            progress.timer = wheel.schedule(uuid, Math.max(progress.retryAt, now + Math.max(0, milestone.seconds() - played)));
+            return;
+        }
+    }
+
+    private void reach(UUID uuid, PluginConfig.Milestone milestone) {
+        int marked = milestoneHandler.markReached(uuid, milestone.name());
+        if (marked < 0) {
+            retry(uuid, milestone);
+            return;
+        }
+        // another proxy or an earlier run may have marked it already
+        if (marked == 0) return;
+        ProxyServer proxy = ProxyServer.getInstance();
+        proxy.getPluginManager().callEvent(new PlaytimeMilestoneEvent(uuid, milestone.name(), milestone.seconds()));
+        ProxiedPlayer player = proxy.getPlayer(uuid);
+        String name = player == null ? uuid.toString() : player.getName();
+        for (String command : milestone.commands()) {
+            proxy.getPluginManager().dispatchCommand(proxy.getConsole(), command
+                    .replace("%player%", name)
+                    .replace("%uuid%", uuid.toString()));
+        }
+    }
+
+    /**
+     * Schedules a milestone that could not be marked again after {@link #MARK_RETRY_SECONDS}.
+     */
+    private void retry(UUID uuid, PluginConfig.Milestone milestone) {
+        Progress progress = players.get(uuid);
+        if (progress == null) return;
+        synchronized (progress) {
+            long now = nowSeconds();
+            progress.reached.remove(milestone.name());
+            progress.retryAt = now + MARK_RETRY_SECONDS;
+            reschedule(uuid, progress, now);
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static final class Progress {
+
+        private final Set<String> reached;
+        private long seconds;
+        private long countingSince = -1;
+        // the next milestone is not checked before this second, after marking one failed
+        private long retryAt;
+        private TimingWheel.Timer<UUID> timer;
+
+        private Progress(long seconds, Set<String> reached) {
+            this.seconds = seconds;
+            this.reached = reached;
+        }
+
+        private long played(long now) {
+            return countingSince < 0 ? seconds : seconds + now - countingSince;
+        }
+    }
+}
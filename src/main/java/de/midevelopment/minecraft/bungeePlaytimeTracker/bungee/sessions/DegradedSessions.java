@@ -0,0 +1,116 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.sessions;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlayerSnapshot;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlaytimeHandler;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Counts the playtime in memory while the database is unavailable, and stores it once the database is healthy again.
+ * <p>
+ * Sessions started while the circuit breaker is open get the id -1 and are buffered here when they end.
+ * {@link #reconcile()} stores the buffered sessions and starts real sessions for the players that are still online.
+ */
+public class DegradedSessions {
+
+    private final Queue<Segment> segments = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, String> pendingPlayers = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> bufferedSeconds = new ConcurrentHashMap<>();
+
+    /**
+     * Remembers a player that could not be registered, it is registered by the next {@link #reconcile()}.
+     */
+    public void registerLater(UUID uuid, String playerName) {
+        pendingPlayers.put(uuid, playerName);
+    }
+
+    /**
+     * Buffers the end of a session that was counted in memory.
+     *
+     * @param uuid    The unique identifier of the player.
+     * @param session The session with the id -1.
+     */
+    public void close(UUID uuid, SharePoint.OpenSession session) {
+        long endMillis = System.currentTimeMillis();
+        segments.add(new Segment(uuid, session.serverName(), session.startMillis(), endMillis));
+        if (!SharePoint.getPlaytimeHandler().isExcludedServer(session.serverName())) {
+            bufferedSeconds.merge(uuid, (endMillis - session.startMillis()) / 1000, Long::sum);
+        }
+    }
+
+    public int size() {
+        return segments.size();
+    }
+
+    /**
+     * Estimates the playtime of a player without the database, from the player snapshot,
+     * the buffered sessions and the running session.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return The playtime in seconds, or -1 if nothing is known about the player.
+     */
+    public int getPlaytime(UUID uuid) {
+        PlayerSnapshot snapshot = SharePoint.getPlayerSnapshot();
+        PlayerSnapshot.Entry stored = snapshot == null ? null : snapshot.find(uuid);
+        SharePoint.OpenSession session = SharePoint.getOpenSession(uuid);
+        if (stored == null && session == null && !bufferedSeconds.containsKey(uuid)) return -1;
+        long playtime = (stored == null ? 0 : stored.seconds()) + bufferedSeconds.getOrDefault(uuid, 0L);
+        if (session != null && !SharePoint.getPlaytimeHandler().isExcludedServer(session.serverName())) {
+            playtime += session.getSeconds();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, playtime);
+    }
+
+    /**
+     * Stores everything counted in memory. Stops at the first failure, the rest is stored by the next call.
+     *
+     * @return The amount of stored sessions.
+     */
+    public synchronized int reconcile() {
+        PlaytimeHandler playtimeHandler = SharePoint.getPlaytimeHandler();
+        for (Map.Entry<UUID, String> player : pendingPlayers.entrySet()) {
+            if (!playtimeHandler.registerPlayer(player.getKey(), player.getValue())) return 0;
+            SharePoint.getKnownPlayers().put(player.getKey(), player.getValue());
+            pendingPlayers.remove(player.getKey(), player.getValue());
+        }
+
+        // replace the sessions of online players, the time until now is buffered like an ended session
+        for (Map.Entry<UUID, SharePoint.OpenSession> entry : SharePoint.getPlayerSessions().entrySet()) {
+            SharePoint.OpenSession session = entry.getValue();
+            if (session.sessionId() >= 0) continue;
+            int sessionId = playtimeHandler.startPlaytime(entry.getKey(), session.serverName());
+            if (sessionId < 0) break;
+            if (SharePoint.replacePlayerSession(entry.getKey(), session, sessionId)) {
+                close(entry.getKey(), session);
+            } else {
+                // the player left or switched the server meanwhile, which already buffered the session
+                playtimeHandler.stopPlaytime(sessionId);
+            }
+        }
+
+        Set<UUID> players = new HashSet<>();
+        int stored = 0;
+        Segment segment;
+        while ((segment = segments.peek()) != null) {
+            if (!playtimeHandler.insertClosedSession(segment.uuid(), segment.serverName(), segment.startMillis(), segment.endMillis())) break;
+            segments.poll();
+            players.add(segment.uuid());
+            stored++;
+        }
+        for (UUID uuid : players) {
+            if (segments.stream().noneMatch(buffered -> buffered.uuid().equals(uuid))) bufferedSeconds.remove(uuid);
+            playtimeHandler.getPlayerCurrentPlaytime(uuid);
+        }
+        return stored;
+    }
+
+    private record Segment(UUID uuid, String serverName, long startMillis, long endMillis) {
+    }
+}
@@ -0,0 +1,96 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.sessions;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.TimingWheel;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.plugin.Plugin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the open sessions to the database, spread over the flush interval.
+ * Every player gets an own flush deadline with some jitter instead of updating all sessions at once,
+ * so the database sees a steady trickle of updates. {@link #tick()} runs every second and hands the
+ * sessions that are due to an own async task, so a slow slice only delays itself.
+ */
+public class SessionFlushScheduler {
+
+    private static final double JITTER = 0.1;
+
+    private final Plugin plugin;
+    private final int intervalSeconds;
+    private final TimingWheel<FlushEntry> wheel = new TimingWheel<>(nowSeconds());
+    private final Map<UUID, FlushEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger flushed = new AtomicInteger();
+
+    public SessionFlushScheduler(Plugin plugin, int intervalSeconds) {
+        this.plugin = plugin;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * Starts flushing the session of a player, the first flush is placed randomly inside the interval.
+     * Does nothing if the player is already scheduled, for example after a server switch.
+     */
+    public void add(UUID uuid) {
+        entries.computeIfAbsent(uuid, key -> {
+            FlushEntry entry = new FlushEntry(key);
+            entry.timer = wheel.schedule(entry, nowSeconds() + 1 + ThreadLocalRandom.current().nextInt(intervalSeconds));
+            return entry;
+        });
+    }
+
+    public void remove(UUID uuid) {
+        FlushEntry entry = entries.remove(uuid);
+        if (entry != null) wheel.cancel(entry.timer);
+    }
+
+    /**
+     * Flushes the sessions that are due in the background.
+     */
+    public void tick() {
+        List<FlushEntry> due = wheel.advance(nowSeconds());
+        if (due.isEmpty()) return;
+        ProxyServer.getInstance().getScheduler().runAsync(plugin, () -> flush(due));
+    }
+
+    private void flush(List<FlushEntry> due) {
+        for (FlushEntry entry : due) {
+            // the player left or joined again with a new entry
+            if (entries.get(entry.uuid) != entry) continue;
+            SharePoint.OpenSession session = SharePoint.getOpenSession(entry.uuid);
+            if (session != null && session.sessionId() >= 0 && SharePoint.getDatabase().isAvailable()) {
+                SharePoint.getPlaytimeHandler().updatePlaytime(session.sessionId());
+                flushed.incrementAndGet();
+            }
+            long jitter = Math.round(intervalSeconds * JITTER * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+            entry.timer = wheel.schedule(entry, nowSeconds() + intervalSeconds + jitter);
+        }
+    }
+
+    /**
+     * @return the amount of sessions flushed since the last call
+     */
+    public int getAndResetFlushed() {
+        return flushed.getAndSet(0);
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static final class FlushEntry {
+
+        private final UUID uuid;
+        private volatile TimingWheel.Timer<FlushEntry> timer;
+
+        private FlushEntry(UUID uuid) {
+            this.uuid = uuid;
+        }
+    }
+}
@@ -7,7 +7,16 @@ import net.md_5.bungee.config.YamlConfiguration;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
@@ -42,6 +51,22 @@ public class ConfigHandler {
      */
     private final Logger logger;
 
+    /**
+     * The parsed and validated snapshot of the configuration.
+     * It is replaced as a whole whenever the configuration changes, so readers always see consistent values.
+     */
+    private volatile PluginConfig snapshot;
+
+    /**
+     * Listeners notified with the new snapshot after the configuration file was changed on disk.
+     */
+    private final List<Consumer<PluginConfig>> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The watch service observing the plugin directory, or null if the file is not watched.
+     */
+    private WatchService watchService;
+
     /**
      * Initializes a new instance of the ConfigHandler class, which manages a configuration file.
      *
@@ -73,6 +98,8 @@ public class ConfigHandler {
             // Synchronize configuration with default file
             syncWithDefaultConfig(resourceClass, configName);
 
+            this.snapshot = PluginConfig.parse(configuration);
+
         } catch (IOException e) {
             logger.severe("Error initializing config file: " + e.getMessage());
         }
@@ -175,7 +202,8 @@ public class ConfigHandler {
 
     /**
      * Adds keys present in the default configuration to the local configuration
-     * if they are missing.
+     * if they are missing. Sections present in both configurations are synchronized recursively,
+     * so new keys inside existing sections are added as well.
      *
      * @param defaultConfig the configuration containing the default keys and values
      * @param localConfig
@@ -186,6 +214,9 @@ public class ConfigHandler {
             if (!localConfig.contains(key)) {
                 localConfig.set(key, defaultConfig.get(key));
                 logger.info("Missing key added: " + key);
+            } else if (defaultConfig.get(key) instanceof Configuration defaultSection
+                    && localConfig.get(key) instanceof Configuration localSection) {
+                addMissingKeys(defaultSection, localSection);
             }
         }
     }
@@ -199,6 +230,104 @@ public class ConfigHandler {
     public void set(String path, Object value) {
         configuration.set(path, value);
         saveConfig();
+        this.snapshot = PluginConfig.parse(configuration);
+    }
+
+    /**
+     * Returns the current typed snapshot of the configuration.
+     *
+     * @return the snapshot, never null after the handler was initialized
+     */
+    public PluginConfig getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Registers a listener that is called with the new snapshot whenever the configuration file is changed on disk.
+     *
+     * @param listener the listener to call
+     */
+    public void addChangeListener(Consumer<PluginConfig> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Starts watching the configuration file for changes.
+     * On a change the file is loaded and validated in the background. Only a valid configuration replaces
+     * the current snapshot, an invalid one is logged and ignored.
+     */
+    public void startWatching() {
+        try {
+            watchService = configFile.toPath().getFileSystem().newWatchService();
+            configFile.getParentFile().toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            logger.severe("Error watching config file: " + e.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::watchLoop, "BungeePlaytimeTracker-ConfigWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the configuration file.
+     */
+    public void stopWatching() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.severe("Error closing config watcher: " + e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        Path fileName = configFile.toPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) changed = true;
+                }
+                key.reset();
+                if (!changed) continue;
+
+                // editors write in several steps, wait until the file is complete
+                Thread.sleep(200);
+                key = watchService.poll();
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                reloadSnapshot();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // watcher stopped
+        }
+    }
+
+    private void reloadSnapshot() {
+        PluginConfig loaded;
+        try {
+            loaded = PluginConfig.parse(ConfigurationProvider.getProvider(YamlConfiguration.class).load(configFile));
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Invalid config file, keeping the previous configuration: " + e.getMessage());
+            return;
+        }
+        if (loaded.equals(snapshot)) return;
+
+        loadConfig();
+        this.snapshot = loaded;
+        logger.info("Config reloaded.");
+        for (Consumer<PluginConfig> listener : changeListeners) {
+            try {
+                listener.accept(loaded);
+            } catch (RuntimeException e) {
+                logger.severe("Error applying config change: " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -0,0 +1,135 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.bungee.utils;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.LocaleHandler;
+import net.md_5.bungee.config.Configuration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An immutable, typed snapshot of the {@code config.yml}.
+ * The configuration is parsed and validated once, components read the values from the
+ * snapshot instead of looking up paths in the YAML tree on every call.
+ *
+ * @param language           the default language of the messages
+ * @param perPlayerLanguage  whether players get messages in the language of their client
+ * @param printSessionUpdate whether every session update is logged
+ * @param instanceId         the unique name of this proxy, may be empty before it was generated
+ * @param reloadPlayers      whether all players are recalculated on startup
+ * @param excludeServers     the servers excluded from the playtime calculation
+ * @param database           the connection of the main database
+ * @param replica            the connection of the read replica, or null if it is disabled
+ * @param milestones         the playtime milestones, ordered by their playtime
+ */
+public record PluginConfig(
+        String language,
+        boolean perPlayerLanguage,
+        boolean printSessionUpdate,
+        String instanceId,
+        boolean reloadPlayers,
+        List<String> excludeServers,
+        DatabaseSettings database,
+        DatabaseSettings replica,
+        List<Milestone> milestones
+) {
+
+    /**
+     * Parses and validates the configuration.
+     *
+     * @param configuration the loaded configuration
+     * @return the parsed snapshot
+     * @throws IllegalArgumentException if a value is missing or invalid
+     */
+    public static PluginConfig parse(Configuration configuration) {
+        String language = configuration.getString("language", "");
+        if (language.isBlank()) {
+            throw new IllegalArgumentException("'language' must not be empty");
+        }
+        if (!LocaleHandler.SUPPORTED_LOCALES.contains(language.trim().toLowerCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("'language' must be one of " + String.join(", ", LocaleHandler.SUPPORTED_LOCALES) + ", not " + language);
+        }
+        DatabaseSettings replica = null;
+        if (configuration.getBoolean("database.replica.enabled", false)) {
+            replica = DatabaseSettings.parse(configuration, "database.replica");
+        }
+        return new PluginConfig(
+                language,
+                configuration.getBoolean("per-player-language", true),
+                configuration.getBoolean("print-session-update", false),
+                configuration.getString("instance-id", ""),
+                configuration.getBoolean("reload-players", false),
+                List.copyOf(configuration.getStringList("exclude-servers")),
+                DatabaseSettings.parse(configuration, "database"),
+                replica,
+                Milestone.parseAll(configuration)
+        );
+    }
+
+    /**
+     * A playtime milestone, reached once per player.
+     *
+     * @param name     the key of the milestone in the config, stored for every player that reached it
+     * @param seconds  the playtime needed to reach it
+     * @param commands the console commands run when it is reached
+     */
+    public record Milestone(String name, long seconds, List<String> commands) {
+
+        static List<Milestone> parseAll(Configuration configuration) {
+            List<Milestone> milestones = new ArrayList<>();
+            Configuration section = configuration.getSection("milestones");
+            if (section == null) return milestones;
+            for (String name : section.getKeys()) {
+                if (name.length() > 32) {
+                    throw new IllegalArgumentException("'milestones." + name + "' must not be longer than 32 characters");
+                }
+                double hours = section.getDouble(name + ".hours", 0);
+                if (hours <= 0) {
+                    throw new IllegalArgumentException("'milestones." + name + ".hours' must be greater than 0");
+                }
+                milestones.add(new Milestone(name, Math.round(hours * 3600), List.copyOf(section.getStringList(name + ".commands"))));
+            }
+            milestones.sort(Comparator.comparingLong(Milestone::seconds));
+            return List.copyOf(milestones);
+        }
+    }
+
+    /**
+     * The connection settings of a database.
+     *
+     * @param maxLagSeconds only used by the read replica
+     */
+    public record DatabaseSettings(
+            String host,
+            int port,
+            String database,
+            String username,
+            String password,
+            int poolSize,
+            int maxLagSeconds
+    ) {
+
+        static DatabaseSettings parse(Configuration configuration, String path) {
+            DatabaseSettings settings = new DatabaseSettings(
+                    configuration.getString(path + ".host", ""),
+                    configuration.getInt(path + ".port", 3306),
+                    configuration.getString(path + ".database", ""),
+                    configuration.getString(path + ".username", ""),
+                    configuration.getString(path + ".password", ""),
+                    configuration.getInt(path + ".pool-size", 5),
+                    configuration.getInt(path + ".max-lag-seconds", 30)
+            );
+            if (settings.host.isBlank() || settings.database.isBlank()) {
+                throw new IllegalArgumentException("'" + path + ".host' and '" + path + ".database' must not be empty");
+            }
+            if (settings.port < 1 || settings.port > 65535) {
+                throw new IllegalArgumentException("'" + path + ".port' must be between 1 and 65535");
+            }
+            if (settings.poolSize < 1) {
+                throw new IllegalArgumentException("'" + path + ".pool-size' must be at least 1");
+            }
+            return settings;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.logging.Logger;
+
+/**
+ * Stops asking the database after it failed or answered slowly several times in a row,
+ * so callers fail at once instead of waiting for the connection timeout of the pool.
+ * A call is slow if waiting for the connection or using it took {@link #SLOW_CALL_MILLIS} or longer,
+ * callers report failed statements with {@link #recordError()}.
+ * <p>
+ * After a backoff one call is let through as a probe. If it reports {@link #recordSuccess()} before
+ * giving back its connection the breaker closes again, otherwise the backoff is doubled up to
+ * {@link #MAX_BACKOFF_MILLIS}. A probe that reports nothing lets the next call probe again.
+ */
+public final class CircuitBreaker {
+
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long SLOW_CALL_MILLIS = 2000;
+    private static final long MIN_BACKOFF_MILLIS = 5000;
+    private static final long MAX_BACKOFF_MILLIS = 300000;
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private State state = State.CLOSED;
+    private int acquireFailures;
+    private int usageFailures;
+    private long backoffMillis = MIN_BACKOFF_MILLIS;
+    private long retryAt;
+    private Thread probeThread;
+    private boolean probeSucceeded;
+    // the probe gave back its connection without reporting, an error reported now belongs to it
+    private boolean probeUnconfirmed;
+    private volatile Runnable closeListener;
+
+    /**
+     * Sets a listener that is called every time the database is healthy again after the breaker opened.
+     * It is called on the thread of the successful probe.
+     */
+    public void setCloseListener(Runnable closeListener) {
+        this.closeListener = closeListener;
+    }
+
+    /**
+     * @return true if calls are let through, also if the next call would be a probe
+     */
+    public synchronized boolean isAvailable() {
+        return state == State.CLOSED || state == State.OPEN && System.currentTimeMillis() >= retryAt;
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    /**
+     * Must be called before a connection is taken from the pool.
+     *
+     * @throws SQLTransientConnectionException if the breaker is open.
+     */
+    synchronized void acquire() throws SQLTransientConnectionException {
+        if (state == State.CLOSED) return;
+        if (state == State.OPEN && System.currentTimeMillis() >= retryAt) {
+            state = State.HALF_OPEN;
+            probeThread = Thread.currentThread();
+            probeSucceeded = false;
+            probeUnconfirmed = false;
+            return;
+        }
+        throw new SQLTransientConnectionException("Database circuit breaker is open");
+    }
+
+    /**
+     * Records a connection that was taken from the pool.
+     *
+     * @param millis How long the caller waited for the connection, slow waits count as failures.
+     */
+    synchronized void recordAcquired(long millis) {
+        if (millis >= SLOW_CALL_MILLIS) recordAcquireFailure();
+        else acquireFailures = 0;
+    }
+
+    /**
+     * Records a connection that could not be taken from the pool.
+     */
+    synchronized void recordAcquireFailure() {
+        recordFailure(++acquireFailures);
+    }
+
+    /**
+     * Records statements that completed, must be called before the connection is closed.
+     */
+    public synchronized void recordSuccess() {
+        usageFailures = 0;
+        if (state == State.HALF_OPEN && probeThread == Thread.currentThread()) probeSucceeded = true;
+    }
+
+    /**
+     * Records a statement that failed, it counts like a slow call.
+     */
+    public synchronized void recordError() {
+        if (probeUnconfirmed && probeThread == Thread.currentThread()) {
+            probeUnconfirmed = false;
+            backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+            retryAt = System.currentTimeMillis() + backoffMillis;
+            return;
+        }
+        recordFailure(++usageFailures);
+    }
+
+    /**
+     * Records a connection that was given back to the pool.
+     * Waiting for connections and using them are counted separately, so a fast statement
+     * on a connection that took long to get does not hide the slow wait.
+     * Whether the statements succeeded is only known from {@link #recordSuccess()} and {@link #recordError()}.
+     *
+     * @param millis How long the connection was used, slow calls count as failures.
+     */
+    void recordUsage(long millis) {
+        Runnable listener;
+        synchronized (this) {
+            if (millis >= SLOW_CALL_MILLIS) {
+                recordFailure(++usageFailures);
+                return;
+            }
+            if (state != State.HALF_OPEN || probeThread != Thread.currentThread()) return;
+            if (!probeSucceeded) {
+                // the probe failed or its caller does not report, the next call probes again
+                state = State.OPEN;
+                retryAt = System.currentTimeMillis();
+                probeUnconfirmed = true;
+                return;
+            }
+            state = State.CLOSED;
+            acquireFailures = 0;
+            backoffMillis = MIN_BACKOFF_MILLIS;
+            probeThread = null;
+            listener = closeListener;
+        }
+        Logger.getLogger("BungeePlaytimeTracker").info("Database is healthy again, circuit breaker closed.");
+        if (listener != null) listener.run();
+    }
+
+    private void recordFailure(int failures) {
+        if (state == State.OPEN || state == State.CLOSED && failures < FAILURE_THRESHOLD) return;
+        if (state == State.HALF_OPEN) {
+            backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+        } else {
+            Logger.getLogger("BungeePlaytimeTracker").warning("Database failed or was slow " + failures
+                    + " times in a row, circuit breaker opened. Playtime is counted in memory until it is healthy again.");
+        }
+        state = State.OPEN;
+        retryAt = System.currentTimeMillis() + backoffMillis;
+    }
+}
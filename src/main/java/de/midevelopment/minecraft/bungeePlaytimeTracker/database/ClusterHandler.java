@@ -0,0 +1,130 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Coordinates several proxies writing into the same database.
+ * Every proxy registers itself with a unique instance name and gets a small integer id,
+ * which is stored in the sessions it creates. Jobs that must only run on one proxy at a time
+ * are guarded by leases in {@code mi_bungee_leases}, which expire if the owner stops renewing them.
+ */
+public class ClusterHandler {
+
+    private final Database database;
+    private final String instanceName;
+    private int instanceId = -1;
+
+    public ClusterHandler(Database database, String instanceName) {
+        this.database = database;
+        this.instanceName = instanceName;
+    }
+
+    /**
+     * Registers this proxy in {@code mi_bungee_instances} and resolves its id.
+     *
+     * @return The id of this proxy, or -1 if it could not be registered.
+     */
+    public int register() {
+        String sql_insert = """
+                INSERT INTO mi_bungee_instances (name, last_heartbeat) VALUES (?, UTC_TIMESTAMP())
+                ON DUPLICATE KEY UPDATE last_heartbeat = UTC_TIMESTAMP();
+                """;
+        String sql_select = """
+                SELECT id FROM mi_bungee_instances WHERE name = ?;
+                """;
+        try (Connection connection = database.getConnection();
+             PreparedStatement insert = connection.prepareStatement(sql_insert);
+             PreparedStatement select = connection.prepareStatement(sql_select)) {
+            insert.setString(1, instanceName);
+            insert.executeUpdate();
+            select.setString(1, instanceName);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) instanceId = rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return instanceId;
+    }
+
+    /**
+     * Marks this proxy as alive.
+     */
+    public void heartbeat() {
+        String sql = """
+                UPDATE mi_bungee_instances SET last_heartbeat = UTC_TIMESTAMP() WHERE id = ?;
+                """;
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, instanceId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tries to take or renew the lease of a job.
+     * The lease is granted if nobody holds it, if it is already held by this proxy,
+     * or if the lease of the previous owner has expired.
+     *
+     * @param job          The name of the job.
+     * @param leaseSeconds How long the lease is valid without renewal.
+     * @return true if this proxy owns the job until the lease expires.
+     */
+    public boolean tryAcquireLease(String job, int leaseSeconds) {
+        // owner is assigned first, so the expires_at condition already sees the new owner
+        String sql_upsert = """
+                INSERT INTO mi_bungee_leases (job, owner, expires_at)
+                VALUES (?, ?, UTC_TIMESTAMP() + INTERVAL ? SECOND)
+                ON DUPLICATE KEY UPDATE
+                  owner = IF(owner = VALUES(owner) OR expires_at < UTC_TIMESTAMP(), VALUES(owner), owner),
+                  expires_at = IF(owner = VALUES(owner), VALUES(expires_at), expires_at);
+                """;
+        String sql_select = """
+                SELECT owner FROM mi_bungee_leases WHERE job = ?;
+                """;
+        try (Connection connection = database.getConnection();
+             PreparedStatement upsert = connection.prepareStatement(sql_upsert);
+             PreparedStatement select = connection.prepareStatement(sql_select)) {
+            upsert.setString(1, job);
+            upsert.setString(2, instanceName);
+            upsert.setInt(3, leaseSeconds);
+            upsert.executeUpdate();
+            select.setString(1, job);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() && instanceName.equals(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Gives up the lease of a job if this proxy holds it, so another proxy can take it over at once.
+     *
+     * @param job The name of the job.
+     */
+    public void releaseLease(String job) {
+        String sql = """
+                DELETE FROM mi_bungee_leases WHERE job = ? AND owner = ?;
+                """;
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, job);
+            ps.setString(2, instanceName);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public String getInstanceName() { return instanceName; }
+
+    public int getInstanceId() { return instanceId; }
+
+}
@@ -2,36 +2,217 @@ package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
 
 public final class Database {
 
+    private static final int DEFAULT_POOL_SIZE = 5;
+    private static final long STALE_HEARTBEAT_MILLIS = 24 * 3600 * 1000L;
+
     private HikariDataSource dataSource;
+    private HikariDataSource readDataSource;
+    private int replicaMaxLagSeconds;
+    private volatile boolean replicaHealthy = false;
+    // every process writes its own heartbeat row, so the lag is measured with a single clock
+    private final String heartbeatOwner = UUID.randomUUID().toString();
+    private long lastHeartbeatCleanup;
+    private LongConsumer connectionWaitRecorder;
+    private int minimumIdle = 1;
+    private boolean serverPrepStmts = true;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /**
+     * Sets the amount of idle connections the pools keep open.
+     * With 0 idle connections are closed after one minute, which suits servers with few queries.
+     * Must be set before {@link #init} to take effect.
+     */
+    public void setMinimumIdle(int minimumIdle) {
+        this.minimumIdle = minimumIdle;
+    }
+
+    /**
+     * Sets if statements are prepared on the server, which is the default. Only meant to compare both modes under load.
+     * Must be set before {@link #init} to take effect.
+     */
+    public void setServerPrepStmts(boolean serverPrepStmts) {
+        this.serverPrepStmts = serverPrepStmts;
+    }
+
+    /**
+     * Sets a recorder that receives the time in nanoseconds every caller waited for a pooled connection.
+     * Must be set before {@link #init} to take effect.
+     */
+    public void setConnectionWaitRecorder(LongConsumer connectionWaitRecorder) {
+        this.connectionWaitRecorder = connectionWaitRecorder;
+    }
 
     public void init(String host, int port, String database, String user, String pass, boolean useSSL) {
+        init(host, port, database, user, pass, useSSL, DEFAULT_POOL_SIZE);
+    }
+
+    public void init(String host, int port, String database, String user, String pass, boolean useSSL, int poolSize) {
+        HikariConfig cfg = createConfig(host, port, database, user, pass, useSSL, poolSize, circuitBreaker);
+        cfg.setPoolName("BungeePlaytimeTracker");
+        cfg.setConnectionTimeout(8000);
+
+        this.dataSource = new HikariDataSource(cfg);
+    }
+
+    /**
+     * Initializes an optional read replica. Read-only queries are sent to it while it is reachable
+     * and does not lag behind the primary by more than {@code maxLagSeconds}, otherwise they fall back
+     * to the primary.
+     */
+    public void initReplica(String host, int port, String database, String user, String pass, boolean useSSL, int poolSize, int maxLagSeconds) {
+        HikariConfig cfg = createConfig(host, port, database, user, pass, useSSL, poolSize, null);
+        cfg.setPoolName("BungeePlaytimeTracker-Replica");
+        cfg.setReadOnly(true);
+        // fail fast, the primary is used instead
+        cfg.setConnectionTimeout(2000);
+        cfg.setInitializationFailTimeout(-1);
+
+        this.replicaMaxLagSeconds = maxLagSeconds;
+        this.readDataSource = new HikariDataSource(cfg);
+        checkReplica();
+    }
+
+    private HikariConfig createConfig(String host, int port, String database, String user, String pass, boolean useSSL, int poolSize, CircuitBreaker breaker) {
         HikariConfig cfg = new HikariConfig();
         cfg.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=" + useSSL + "&characterEncoding=utf8");
         cfg.setUsername(user);
         cfg.setPassword(pass);
-        cfg.setMaximumPoolSize(5);
-        cfg.setMinimumIdle(1);
-        cfg.setConnectionTimeout(8000);
+        cfg.setMaximumPoolSize(poolSize);
+        cfg.setMinimumIdle(Math.min(minimumIdle, poolSize));
         cfg.setIdleTimeout(60000);
         cfg.setMaxLifetime(600000);
         cfg.setAutoCommit(true);
         cfg.addDataSourceProperty("cachePrepStmts", "true");
         cfg.addDataSourceProperty("prepStmtCacheSize", "250");
         cfg.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // prepare once per connection on the server, the driver cache keeps the handles across close()
+        cfg.addDataSourceProperty("useServerPrepStmts", String.valueOf(serverPrepStmts));
+        cfg.addDataSourceProperty("cacheResultSetMetadata", "true");
+        cfg.addDataSourceProperty("cacheServerConfiguration", "true");
+        cfg.addDataSourceProperty("useLocalSessionState", "true");
+        cfg.addDataSourceProperty("elideSetAutoCommits", "true");
+        cfg.addDataSourceProperty("maintainTimeStats", "false");
+        if (connectionWaitRecorder != null || breaker != null) {
+            LongConsumer recorder = connectionWaitRecorder;
+            cfg.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                    if (recorder != null) recorder.accept(elapsedAcquiredNanos);
+                }
 
-        this.dataSource = new HikariDataSource(cfg);
+                @Override
+                public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                    if (breaker != null) breaker.recordUsage(elapsedBorrowedMillis);
+                }
+            });
+        }
+        return cfg;
     }
 
     public void createTables() throws SQLException {
         String[] createTableStatements = {
                 """
+        create table if not exists mi_bungee_servers
+        (
+            id   smallint unsigned auto_increment
+                primary key,
+            name varchar(32) not null,
+            constraint unique_name
+                unique (name)
+        )
+            comment 'Dictionary of the server names referenced by the sessions';
+        """,
+                """
+        create table if not exists mi_bungee_instances
+        (
+            id             smallint unsigned auto_increment
+                primary key,
+            name           varchar(64) not null,
+            last_heartbeat timestamp   null,
+            constraint unique_name
+                unique (name)
+        )
+            comment 'Proxies writing into these tables';
+        """,
+                """
+        create table if not exists mi_bungee_leases
+        (
+            job        varchar(32) not null
+                primary key,
+            owner      varchar(64) not null,
+            expires_at timestamp   not null
+        )
+            comment 'Ownership of jobs that only one proxy may run at a time';
+        """,
+                """
+        create table if not exists mi_bungee_replica_heartbeat
+        (
+            owner varchar(64) not null
+                primary key,
+            beat  bigint      not null comment 'Unix time in milliseconds of the writing process'
+        )
+            comment 'Heartbeats written to the primary to measure the lag of the read replica';
+        """,
+                """
+        create table if not exists mi_bungee_settings
+        (
+            name  varchar(32)   not null
+                primary key,
+            value varchar(1024) not null
+        )
+            comment 'State shared by all proxies, like the excluded servers the totals were calculated with';
+        """,
+                """
+        create table if not exists mi_bungee_analytics
+        (
+            day         date              not null,
+            server_id   smallint unsigned not null comment '0 for the whole network',
+            instance_id smallint unsigned not null,
+            uniques     varbinary(4096)   not null comment 'HyperLogLog registers of the players',
+            lengths     varbinary(64)     not null comment 'Session length histogram',
+            primary key (day, server_id, instance_id)
+        )
+            comment 'Daily network statistics, one row per proxy';
+        """,
+                """
+        create table if not exists mi_bungee_concurrency
+        (
+            server_id      smallint unsigned not null,
+            instance_id    smallint unsigned not null,
+            start_epoch    bigint            not null comment 'Unix time of the first sample',
+            sample_seconds smallint unsigned not null,
+            samples        smallint unsigned not null,
+            data           varbinary(2048)   not null comment 'Delta encoded online players',
+            primary key (server_id, start_epoch, instance_id),
+            key index_start_epoch (start_epoch)
+        )
+            comment 'Online players per server over time, one block of samples per row and proxy';
+        """,
+                """
+        create table if not exists mi_bungee_milestones
+        (
+            player_uuid varchar(36) not null,
+            milestone   varchar(32) not null,
+            reached_at  timestamp   not null,
+            primary key (player_uuid, milestone)
+        )
+            comment 'Playtime milestones reached by the players';
+        """,
+                """
         create table if not exists mi_bungee_player_playtime
         (
             uuid     varchar(36)              not null,
@@ -39,6 +220,16 @@ public final class Database {
             playtime int unsigned default 0 null,
             primary key (uuid)
         );
+        """,
+                """
+        create table if not exists mi_bungee_player_server_playtime
+        (
+            player_uuid varchar(36)       not null,
+            server_id   smallint unsigned not null comment '0 for sessions without a server',
+            playtime    int unsigned      not null,
+            primary key (player_uuid, server_id)
+        )
+            comment 'Playtime of the players per server, the totals are calculated from it';
         """,
                 """
         create table if not exists mi_bungee_player_playtime_sessions
@@ -47,6 +238,9 @@ public final class Database {
                 primary key,
             player_uuid varchar(36)                         not null,
             servername  varchar(32)                         null,
+            server_id   smallint unsigned                   null,
+            instance_id smallint unsigned                   null,
+            state       tinyint unsigned  default 1         not null comment '0 open, 1 closed, 2 closed by crash recovery',
             start_time  timestamp default (utc_timestamp()) null,
             end_time    timestamp default (utc_timestamp()) null,
             diff_time   int as (timestampdiff(SECOND, `start_time`, `end_time`)) stored
@@ -63,6 +257,14 @@ public final class Database {
                 """
         create index index_player_uuid
             on mi_bungee_player_playtime_sessions (player_uuid);
+        """,
+                """
+        create index index_player_uuid_start_time
+            on mi_bungee_player_playtime_sessions (player_uuid, start_time);
+        """,
+                """
+        create index index_instance_state
+            on mi_bungee_player_playtime_sessions (instance_id, state);
         """
         };
 
@@ -74,6 +276,12 @@ public final class Database {
                 st.executeUpdate(sql);
             }
 
+            migrateServerNames(st);
+            addColumnIfMissing(st, "alter table mi_bungee_player_playtime_sessions add column instance_id smallint unsigned null after server_id");
+            // sessions of older versions count as closed
+            addColumnIfMissing(st, "alter table mi_bungee_player_playtime_sessions add column state tinyint unsigned default 1 not null comment '0 open, 1 closed, 2 closed by crash recovery' after instance_id");
+            fillServerPlaytimes(st);
+
             // Indizes erstellen - Fehler ignorieren, wenn Index bereits existiert
             for (String sql : createIndexStatements) {
                 try {
@@ -85,6 +293,87 @@ public final class Database {
                     }
                 }
             }
+            // created by an earlier version for the backfill check, which is now stored as a setting
+            try {
+                st.executeUpdate("drop index index_servername on mi_bungee_player_playtime_sessions");
+            } catch (SQLException e) {
+                // Ignoriere Fehler 1091 (Index existiert nicht)
+                if (e.getErrorCode() != 1091) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the playtime per server from all sessions, once when {@code mi_bungee_player_server_playtime}
+     * was created. Afterward it is kept up to date whenever the playtime of a player is calculated.
+     */
+    private void fillServerPlaytimes(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("select exists(select 1 from mi_bungee_player_server_playtime)")) {
+            rs.next();
+            if (rs.getBoolean(1)) return;
+        }
+        st.executeUpdate("""
+                insert ignore into mi_bungee_player_server_playtime (player_uuid, server_id, playtime)
+                select player_uuid, coalesce(server_id, 0), greatest(0, coalesce(sum(timestampdiff(SECOND, start_time, coalesce(end_time, utc_timestamp()))), 0))
+                from mi_bungee_player_playtime_sessions
+                group by player_uuid, coalesce(server_id, 0);
+                """);
+    }
+
+    /**
+     * Moves the server names of sessions created before the server dictionary existed
+     * into {@code mi_bungee_servers} and references them by id.
+     * Runs on every start until it was finished once, so a backfill that was interrupted is finished later.
+     * The finished backfill is stored in {@code mi_bungee_settings}, so later starts do not scan the sessions.
+     * The playtime per server is calculated again afterward, it counted these sessions without a server.
+     */
+    private void migrateServerNames(Statement st) throws SQLException {
+        addColumnIfMissing(st, "alter table mi_bungee_player_playtime_sessions add column server_id smallint unsigned null after servername");
+        try (ResultSet rs = st.executeQuery("select exists(select 1 from mi_bungee_settings where name = 'server-names-migrated')")) {
+            rs.next();
+            if (rs.getBoolean(1)) return;
+        }
+        boolean legacySessions;
+        try (ResultSet rs = st.executeQuery("""
+                select exists(select 1 from mi_bungee_player_playtime_sessions where server_id is null and servername is not null)
+                """)) {
+            rs.next();
+            legacySessions = rs.getBoolean(1);
+        }
+        if (!legacySessions) {
+            st.executeUpdate("insert ignore into mi_bungee_settings (name, value) values ('server-names-migrated', '1')");
+            return;
+        }
+        st.executeUpdate("""
+                insert ignore into mi_bungee_servers (name)
+                select distinct servername from mi_bungee_player_playtime_sessions where server_id is null and servername is not null;
+                """);
+        st.executeUpdate("""
+                update mi_bungee_player_playtime_sessions s
+                    join mi_bungee_servers sv on sv.name = s.servername
+                set s.server_id = sv.id, s.servername = null
+                where s.server_id is null and s.servername is not null;
+                """);
+        // refilled by fillServerPlaytimes
+        st.executeUpdate("delete from mi_bungee_player_server_playtime");
+        st.executeUpdate("insert ignore into mi_bungee_settings (name, value) values ('server-names-migrated', '1')");
+    }
+
+    /**
+     * Runs an {@code add column} statement for tables created by an older version.
+     *
+     * @return true if the column was added, false if it already existed.
+     */
+    private boolean addColumnIfMissing(Statement st, String sql) throws SQLException {
+        try {
+            st.executeUpdate(sql);
+            return true;
+        } catch (SQLException e) {
+            // Ignoriere Fehler 1060 (Spalte existiert bereits)
+            if (e.getErrorCode() == 1060) return false;
+            throw e;
         }
     }
 
@@ -92,10 +381,124 @@ public final class Database {
         if (dataSource == null) {
             throw new IllegalStateException("Database not initialized");
         }
-        return dataSource.getConnection();
+        circuitBreaker.acquire();
+        long start = System.currentTimeMillis();
+        try {
+            Connection connection = dataSource.getConnection();
+            circuitBreaker.recordAcquired(System.currentTimeMillis() - start);
+            return connection;
+        } catch (SQLException e) {
+            circuitBreaker.recordAcquireFailure();
+            throw e;
+        }
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * @return false while the circuit breaker is open and calls to the primary fail at once
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.isAvailable();
+    }
+
+    /**
+     * Returns a connection for read-only queries.
+     * Uses the read replica if one is configured and healthy, otherwise the primary.
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (readDataSource != null && replicaHealthy) {
+            try {
+                return readDataSource.getConnection();
+            } catch (SQLException e) {
+                replicaHealthy = false;
+                Logger.getLogger("BungeePlaytimeTracker").warning("Read replica unavailable, using primary: " + e.getMessage());
+            }
+        }
+        return getConnection();
+    }
+
+    /**
+     * Checks if the read replica is reachable and not lagging, should be called every second.
+     * Every call writes the current time of this process into {@code mi_bungee_replica_heartbeat} on the primary.
+     * The lag is the time since the newest heartbeat the replica has applied, both times are taken from the
+     * clock of this process, so it is exact to milliseconds and independent of the clocks of the databases.
+     * It is overestimated by at most the time between two calls.
+     */
+    public void checkReplica() {
+        if (readDataSource == null) return;
+        String sql_select = """
+                SELECT beat FROM mi_bungee_replica_heartbeat WHERE owner = ?;
+                """;
+        String sql_beat = """
+                INSERT INTO mi_bungee_replica_heartbeat (owner, beat) VALUES (?, ?)
+                ON DUPLICATE KEY UPDATE beat = VALUES(beat);
+                """;
+        String sql_cleanup = """
+                DELETE FROM mi_bungee_replica_heartbeat WHERE beat < ?;
+                """;
+        boolean healthy;
+        long now = System.currentTimeMillis();
+        try (Connection replica = readDataSource.getConnection();
+             PreparedStatement ps = replica.prepareStatement(sql_select)) {
+            ps.setString(1, heartbeatOwner);
+            try (ResultSet rs = ps.executeQuery()) {
+                healthy = rs.next() && now - rs.getLong(1) <= replicaMaxLagSeconds * 1000L;
+            }
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        try (Connection primary = getConnection();
+             PreparedStatement beat = primary.prepareStatement(sql_beat)) {
+            beat.setString(1, heartbeatOwner);
+            beat.setLong(2, now);
+            beat.executeUpdate();
+            // rows of processes that are gone
+            if (now - lastHeartbeatCleanup >= STALE_HEARTBEAT_MILLIS) {
+                try (PreparedStatement cleanup = primary.prepareStatement(sql_cleanup)) {
+                    cleanup.setLong(1, now - STALE_HEARTBEAT_MILLIS);
+                    cleanup.executeUpdate();
+                }
+                lastHeartbeatCleanup = now;
+            }
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        if (healthy != replicaHealthy) {
+            Logger.getLogger("BungeePlaytimeTracker").info(healthy
+                    ? "Read replica is healthy, routing reads to it."
+                    : "Read replica is down or lagging, routing reads to the primary.");
+        }
+        replicaHealthy = healthy;
+    }
+
+    /**
+     * Returns the server-side prepare and execute counters of the database.
+     * With working statement caching the prepares stay flat while the executes grow.
+     *
+     * @return The counters as text, for example {@code Com_stmt_prepare=12, Com_stmt_execute=4810}.
+     */
+    public String getStatementStats() {
+        String sql = """
+                SHOW GLOBAL STATUS WHERE Variable_name IN ('Com_stmt_prepare', 'Com_stmt_execute', 'Com_stmt_close');
+                """;
+        StringJoiner stats = new StringJoiner(", ");
+        try (Connection connection = getConnection();
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                stats.add(rs.getString(1) + "=" + rs.getString(2));
+            }
+        } catch (SQLException e) {
+            return "unavailable (" + e.getMessage() + ")";
+        }
+        return stats.toString();
     }
 
     public void shutdown() {
+        if (readDataSource != null) readDataSource.close();
         if (dataSource != null) dataSource.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stores which playtime milestones a player has reached.
+ * A milestone is only marked once per player, even if several proxies or a restart try it again,
+ * so the rewards of a milestone are only given once.
+ */
+public class MilestoneHandler {
+
+    private static final String SQL_SELECT_REACHED = """
+            SELECT milestone FROM mi_bungee_milestones WHERE player_uuid = ?;
+            """;
+    private static final String SQL_MARK_REACHED = """
+            INSERT IGNORE INTO mi_bungee_milestones (player_uuid, milestone, reached_at) VALUES (?, ?, UTC_TIMESTAMP());
+            """;
+
+    private final Database database;
+
+    public MilestoneHandler(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * @param uuid The unique identifier of the player.
+     * @return The names of the milestones the player has reached, or null on a database error.
+     */
+    public Set<String> getReached(UUID uuid) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_REACHED)) {
+            ps.setString(1, uuid.toString());
+            Set<String> reached = new HashSet<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) reached.add(rs.getString(1));
+            }
+            return reached;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Marks a milestone as reached.
+     *
+     * @param uuid      The unique identifier of the player.
+     * @param milestone The name of the milestone.
+     * @return 1 if this call marked it, 0 if it was already reached, or -1 on a database error.
+     */
+    public int markReached(UUID uuid, String milestone) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_MARK_REACHED)) {
+            ps.setString(1, uuid.toString());
+            ps.setString(2, milestone);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Read-only, memory-mapped snapshot of the playtime of all players, so leaderboards and ranks are available right
+ * after a restart without asking the database.
+ * <p>
+ * The file starts with a header, followed by the players ordered by their playtime and an index ordered by
+ * UUID that points to the rank of each player:
+ * <pre>
+ * header   magic (int), format (short), reserved (short), version stamp (long), players (int), reserved (int)
+ * players  uuid (2 longs), seconds (int), username (16 bytes UTF-8, zero padded)
+ * index    uuid (2 longs), rank (int)
+ * </pre>
+ * Lookups read the mapped file directly, only the returned entries are created on the heap.
+ * <p>
+ * Every snapshot is written to a new file named after its version stamp, so a mapped snapshot is never replaced,
+ * which is not possible on every platform. Older files are deleted once the new snapshot is in use.
+ */
+public final class PlayerSnapshot {
+
+    private static final int MAGIC = 0x42505453;
+    private static final short FORMAT = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int NAME_BYTES = 16;
+    private static final int PLAYER_BYTES = 16 + 4 + NAME_BYTES;
+    private static final int INDEX_BYTES = 16 + 4;
+    private static final String FILE_PREFIX = "players-";
+    private static final String FILE_SUFFIX = ".snapshot";
+
+    private final ByteBuffer buffer;
+    private final long versionStamp;
+    private final int size;
+    private final int indexOffset;
+
+    private PlayerSnapshot(ByteBuffer buffer, long versionStamp, int size) {
+        this.buffer = buffer;
+        this.versionStamp = versionStamp;
+        this.size = size;
+        this.indexOffset = HEADER_BYTES + size * PLAYER_BYTES;
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file The snapshot file.
+     * @return The mapped snapshot.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static PlayerSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getShort(4) != FORMAT) {
+                throw new IOException("Not a player snapshot of format " + FORMAT + ": " + file);
+            }
+            int size = buffer.getInt(16);
+            if (size < 0 || buffer.capacity() != HEADER_BYTES + (long) size * (PLAYER_BYTES + INDEX_BYTES)) {
+                throw new IOException("Player snapshot is truncated: " + file);
+            }
+            return new PlayerSnapshot(buffer, buffer.getLong(8), size);
+        }
+    }
+
+    /**
+     * Maps the newest snapshot of a directory.
+     *
+     * @param directory The directory the snapshots are written to.
+     * @return The mapped snapshot.
+     * @throws NoSuchFileException if the directory contains no snapshot.
+     * @throws IOException         if the snapshot cannot be read or is not a valid snapshot.
+     */
+    public static PlayerSnapshot openNewest(Path directory) throws IOException {
+        Path newest = null;
+        long newestStamp = Long.MIN_VALUE;
+        for (Path file : list(directory)) {
+            long stamp = getVersionStamp(file);
+            if (stamp > newestStamp) {
+                newest = file;
+                newestStamp = stamp;
+            }
+        }
+        if (newest == null) throw new NoSuchFileException(directory.resolve(FILE_PREFIX + "*" + FILE_SUFFIX).toString());
+        return open(newest);
+    }
+
+    /**
+     * Deletes the snapshots older than the given one. Files that cannot be deleted, because they are still mapped
+     * on some platforms, are deleted by a later call.
+     *
+     * @param directory    The directory the snapshots are written to.
+     * @param versionStamp The version stamp of the snapshot in use.
+     */
+    public static void deleteOlder(Path directory, long versionStamp) {
+        try {
+            for (Path file : list(directory)) {
+                if (getVersionStamp(file) >= versionStamp) continue;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Writes a snapshot into a new file, which is moved into place atomically so a crash never leaves a broken snapshot.
+     *
+     * @param directory    The directory the snapshots are written to.
+     * @param versionStamp When the players were read from the database, in milliseconds since the epoch.
+     * @param players      The players, ordered by their playtime with the most playtime first.
+     * @return The written file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static Path write(Path directory, long versionStamp, Builder players) throws IOException {
+        int size = players.size;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + size * (PLAYER_BYTES + INDEX_BYTES));
+        buffer.putInt(MAGIC).putShort(FORMAT).putShort((short) 0).putLong(versionStamp).putInt(size).putInt(0);
+        int[] byUuid = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            buffer.putLong(players.most[rank]).putLong(players.least[rank]).putInt(players.seconds[rank]);
+            buffer.put(players.names, rank * NAME_BYTES, NAME_BYTES);
+            byUuid[rank] = rank;
+        }
+        sortByUuid(byUuid, players.most, players.least);
+        for (int rank : byUuid) {
+            buffer.putLong(players.most[rank]).putLong(players.least[rank]).putInt(rank);
+        }
+
+        Path file = directory.resolve(FILE_PREFIX + versionStamp + FILE_SUFFIX);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, buffer.array());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                if (getVersionStamp(file) >= 0) files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the version stamp in the name of a snapshot file, or -1 if it is no snapshot file
+     */
+    private static long getVersionStamp(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Heapsort of the ranks by the UUID of their player, in the order of {@link UUID#compareTo(UUID)}.
+     */
+    private static void sortByUuid(int[] ranks, long[] most, long[] least) {
+        for (int root = ranks.length / 2 - 1; root >= 0; root--) {
+            siftDown(ranks, root, ranks.length, most, least);
+        }
+        for (int end = ranks.length - 1; end > 0; end--) {
+            int largest = ranks[0];
+            ranks[0] = ranks[end];
+            ranks[end] = largest;
+            siftDown(ranks, 0, end, most, least);
+        }
+    }
+
+    private static void siftDown(int[] ranks, int root, int end, long[] most, long[] least) {
+        int rank = ranks[root];
+        while (true) {
+            int child = root * 2 + 1;
+            if (child >= end) break;
+            if (child + 1 < end && compare(ranks[child + 1], ranks[child], most, least) > 0) child++;
+            if (compare(ranks[child], rank, most, least) <= 0) break;
+            ranks[root] = ranks[child];
+            root = child;
+        }
+        ranks[root] = rank;
+    }
+
+    private static int compare(int a, int b, long[] most, long[] least) {
+        int compare = Long.compare(most[a], most[b]);
+        return compare != 0 ? compare : Long.compare(least[a], least[b]);
+    }
+
+    /**
+     * @return when the players were read from the database, in milliseconds since the epoch
+     */
+    public long getVersionStamp() { return versionStamp; }
+
+    public int size() { return size; }
+
+    /**
+     * @param rank The rank, starting at 0 for the player with the most playtime.
+     * @return The player at that rank.
+     */
+    public Entry get(int rank) {
+        int offset = HEADER_BYTES + rank * PLAYER_BYTES;
+        UUID uuid = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+        byte[] name = new byte[NAME_BYTES];
+        int length = 0;
+        for (; length < NAME_BYTES; length++) {
+            name[length] = buffer.get(offset + 20 + length);
+            if (name[length] == 0) break;
+        }
+        return new Entry(uuid, new String(name, 0, length, StandardCharsets.UTF_8), buffer.getInt(offset + 16));
+    }
+
+    /**
+     * @param uuid The unique identifier of the player.
+     * @return The rank of the player, starting at 1, or -1 if the player is not in the snapshot.
+     */
+    public int getRank(UUID uuid) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = indexOffset + middle * INDEX_BYTES;
+            int compare = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8)).compareTo(uuid);
+            if (compare < 0) low = middle + 1;
+            else if (compare > 0) high = middle - 1;
+            else return buffer.getInt(offset + 16) + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @param uuid The unique identifier of the player.
+     * @return The player, or null if the player is not in the snapshot.
+     */
+    public Entry find(UUID uuid) {
+        int rank = getRank(uuid);
+        return rank < 0 ? null : get(rank - 1);
+    }
+
+    /**
+     * Returns the players with the most playtime in the same form as {@link PlaytimeHandler#getTopPlayers(int)}.
+     */
+    public Map<String, Integer> getTopPlayers(int amount) {
+        Map<String, Integer> topPlayers = new LinkedHashMap<>();
+        for (int rank = 0; rank < Math.min(amount, size); rank++) {
+            Entry player = get(rank);
+            topPlayers.put(player.name().isEmpty() ? player.uuid().toString() : player.name(), player.seconds());
+        }
+        return topPlayers;
+    }
+
+    public void forEach(Consumer<Entry> consumer) {
+        for (int rank = 0; rank < size; rank++) consumer.accept(get(rank));
+    }
+
+    /**
+     * @param uuid    The unique identifier of the player.
+     * @param name    The last known username, empty if unknown.
+     * @param seconds The stored playtime.
+     */
+    public record Entry(UUID uuid, String name, int seconds) {
+    }
+
+    /**
+     * Collects the players of a snapshot in primitive arrays, so all players can be written without an object per player.
+     */
+    public static final class Builder {
+
+        private long[] most = new long[1024];
+        private long[] least = new long[1024];
+        private int[] seconds = new int[1024];
+        private byte[] names = new byte[1024 * NAME_BYTES];
+        private int size;
+
+        /**
+         * Adds the player with the next rank, the players must be added with the most playtime first.
+         */
+        public void add(Entry player) {
+            if (size == seconds.length) {
+                most = Arrays.copyOf(most, size * 2);
+                least = Arrays.copyOf(least, size * 2);
+                seconds = Arrays.copyOf(seconds, size * 2);
+                names = Arrays.copyOf(names, size * 2 * NAME_BYTES);
+            }
+            most[size] = player.uuid().getMostSignificantBits();
+            least[size] = player.uuid().getLeastSignificantBits();
+            seconds[size] = player.seconds();
+            byte[] name = player.name() == null ? new byte[0] : player.name().getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(name, 0, names, size * NAME_BYTES, Math.min(name.length, NAME_BYTES));
+            size++;
+        }
+
+        public int size() { return size; }
+    }
+}
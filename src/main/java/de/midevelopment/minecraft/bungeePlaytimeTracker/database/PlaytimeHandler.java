@@ -1,22 +1,262 @@
 package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
 
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.PlayerNameIndex;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class PlaytimeHandler {
 
+    private static final String SQL_REGISTER_PLAYER = """
+            INSERT INTO mi_bungee_player_playtime (uuid, username) VALUES (?, ?)
+            ON DUPLICATE KEY UPDATE username = ?;
+            """;
+    private static final String SQL_SELECT_PLAYTIME = """
+            SELECT playtime from mi_bungee_player_playtime WHERE uuid = ?;
+            """;
+    private static final String SQL_SELECT_PLAYTIMES = """
+            SELECT uuid, playtime from mi_bungee_player_playtime WHERE uuid IN (%s);
+            """;
+    private static final int SELECT_PLAYTIMES_CHUNK_SIZE = 512;
+    private static final String SQL_UPDATE_PLAYTIME = """
+            UPDATE mi_bungee_player_playtime SET playtime = ? WHERE uuid = ?;
+            """;
+    private static final String SQL_SELECT_SERVER_PLAYTIMES = """
+            SELECT COALESCE(server_id, 0), SUM(
+              CASE
+                WHEN end_time IS NULL
+                  THEN TIMESTAMPDIFF(SECOND, start_time, UTC_TIMESTAMP())
+                ELSE TIMESTAMPDIFF(SECOND, start_time, end_time)
+              END
+            )
+            FROM mi_bungee_player_playtime_sessions
+            WHERE player_uuid = ?
+            GROUP BY COALESCE(server_id, 0);
+            """;
+    private static final String SQL_UPSERT_SERVER_PLAYTIME = """
+            INSERT INTO mi_bungee_player_server_playtime (player_uuid, server_id, playtime) VALUES (?, ?, ?)
+            ON DUPLICATE KEY UPDATE playtime = VALUES(playtime);
+            """;
+    private static final String SQL_START_SESSION = """
+            Insert into mi_bungee_player_playtime_sessions (player_uuid, server_id, instance_id, state) values (?, ?, ?, 0);
+            """;
+    // the times are passed as seconds before now, so they are in the UTC of the database like all other sessions
+    private static final String SQL_INSERT_CLOSED_SESSION = """
+            INSERT INTO mi_bungee_player_playtime_sessions (player_uuid, server_id, instance_id, state, start_time, end_time)
+            VALUES (?, ?, ?, 1, UTC_TIMESTAMP() - INTERVAL ? SECOND, UTC_TIMESTAMP() - INTERVAL ? SECOND);
+            """;
+    private static final String SQL_UPDATE_SESSION = """
+            UPDATE mi_bungee_player_playtime_sessions SET end_time = LEAST(UTC_TIMESTAMP(), COALESCE((
+                SELECT next_start FROM (
+                    SELECT MIN(n.start_time) AS next_start
+                    FROM mi_bungee_player_playtime_sessions c
+                    JOIN mi_bungee_player_playtime_sessions n ON n.player_uuid = c.player_uuid AND n.id > c.id
+                    WHERE c.id = ?
+                ) next_session
+            ), UTC_TIMESTAMP()))
+            WHERE id = ?;
+            """;
+    private static final String SQL_STOP_SESSION = """
+            UPDATE mi_bungee_player_playtime_sessions SET state = 1, end_time = LEAST(UTC_TIMESTAMP(), COALESCE((
+                SELECT next_start FROM (
+                    SELECT MIN(n.start_time) AS next_start
+                    FROM mi_bungee_player_playtime_sessions c
+                    JOIN mi_bungee_player_playtime_sessions n ON n.player_uuid = c.player_uuid AND n.id > c.id
+                    WHERE c.id = ?
+                ) next_session
+            ), UTC_TIMESTAMP()))
+            WHERE id = ?;
+            """;
+    // %s is replaced with the placeholders of the session ids, twice
+    private static final String SQL_STOP_SESSIONS = """
+            UPDATE mi_bungee_player_playtime_sessions s
+            LEFT JOIN (
+                SELECT c.id, MIN(n.start_time) AS next_start
+                FROM mi_bungee_player_playtime_sessions c
+                JOIN mi_bungee_player_playtime_sessions n ON n.player_uuid = c.player_uuid AND n.id > c.id
+                WHERE c.id IN (%s)
+                GROUP BY c.id
+            ) next_session ON next_session.id = s.id
+            SET s.state = 1, s.end_time = LEAST(UTC_TIMESTAMP(), COALESCE(next_session.next_start, UTC_TIMESTAMP()))
+            WHERE s.id IN (%s);
+            """;
+    private static final String SQL_RECOVER_SESSIONS = """
+            UPDATE mi_bungee_player_playtime_sessions SET state = 2 WHERE instance_id = ? AND state = 0;
+            """;
+    private static final int STOP_SESSIONS_CHUNK_SIZE = 1024;
+    private static final String SQL_SELECT_SETTING = """
+            SELECT value FROM mi_bungee_settings WHERE name = ?;
+            """;
+    private static final String SQL_UPSERT_SETTING = """
+            INSERT INTO mi_bungee_settings (name, value) VALUES (?, ?)
+            ON DUPLICATE KEY UPDATE value = VALUES(value);
+            """;
+    private static final String APPLIED_EXCLUDED_SERVERS = "applied-excluded-servers";
+    private static final String SQL_SELECT_ALL_PLAYERS = """
+            SELECT uuid from mi_bungee_player_playtime
+            """;
+    private static final String SQL_SELECT_PLAYER_TOTALS = """
+            SELECT uuid, username, playtime from mi_bungee_player_playtime ORDER BY playtime DESC
+            """;
+    private static final String SQL_SELECT_TOP_PLAYERS = """
+            SELECT username, playtime FROM mi_bungee_player_playtime ORDER BY playtime DESC LIMIT ?;
+            """;
+    private static final String SQL_SELECT_SESSION = """
+            SELECT s.id, s.player_uuid, COALESCE(sv.name, s.servername), s.start_time, s.end_time, s.diff_time
+            FROM mi_bungee_player_playtime_sessions s
+            LEFT JOIN mi_bungee_servers sv ON sv.id = s.server_id
+            WHERE s.id = ?;
+            """;
+    private static final String SQL_SELECT_SESSIONS = """
+            SELECT s.id, s.player_uuid, COALESCE(sv.name, s.servername), s.start_time, s.end_time, s.diff_time
+            FROM mi_bungee_player_playtime_sessions s
+            LEFT JOIN mi_bungee_servers sv ON sv.id = s.server_id
+            WHERE s.player_uuid = ?;
+            """;
+    private static final String SQL_SELECT_SESSIONS_FIRST_PAGE = """
+            SELECT s.id, s.player_uuid, COALESCE(sv.name, s.servername), s.start_time, s.end_time, s.diff_time
+            FROM mi_bungee_player_playtime_sessions s
+            LEFT JOIN mi_bungee_servers sv ON sv.id = s.server_id
+            WHERE s.player_uuid = ? AND s.start_time >= ? AND s.start_time < ?
+            ORDER BY s.start_time DESC, s.id DESC LIMIT ?;
+            """;
+    private static final String SQL_SELECT_SESSIONS_NEXT_PAGE = """
+            SELECT s.id, s.player_uuid, COALESCE(sv.name, s.servername), s.start_time, s.end_time, s.diff_time
+            FROM mi_bungee_player_playtime_sessions s
+            LEFT JOIN mi_bungee_servers sv ON sv.id = s.server_id
+            WHERE s.player_uuid = ? AND s.start_time >= ?
+            AND (s.start_time < ? OR (s.start_time = ? AND s.id < ?))
+            ORDER BY s.start_time DESC, s.id DESC LIMIT ?;
+            """;
+
     private final Database database;
-    private final String excludedServers;
+    private final CircuitBreaker circuitBreaker;
+    private final ServerRegistry serverRegistry;
+    private final Set<String> excludedServers;
+    private final BitSet excludedServerIds = new BitSet();
+    // set once all excluded servers are resolved to their ids
+    private volatile String sqlRecalculatePlaytimes;
+    private final int instanceId;
+    private final PlayerNameIndex playerNames;
 
     public PlaytimeHandler(Database database, List<String> excludedServers) {
+        this(database, excludedServers, -1);
+    }
+
+    /**
+     * @param database        The database to store the sessions in.
+     * @param excludedServers The servers excluded from the playtime calculation.
+     * @param instanceId      The id of this proxy from the {@link ClusterHandler}, stored in every created session.
+     */
+    public PlaytimeHandler(Database database, List<String> excludedServers, int instanceId) {
+        this(database, excludedServers, instanceId, null);
+    }
+
+    /**
+     * @param database        The database to store the sessions in.
+     * @param excludedServers The servers excluded from the playtime calculation.
+     * @param instanceId      The id of this proxy from the {@link ClusterHandler}, stored in every created session.
+     * @param playerNames     The index updated with every registered player, may be null.
+     */
+    public PlaytimeHandler(Database database, List<String> excludedServers, int instanceId, PlayerNameIndex playerNames) {
+        this(database, new ServerRegistry(database), excludedServers, instanceId, playerNames);
+    }
+
+    /**
+     * @param database        The database to store the sessions in.
+     * @param serverRegistry  The server ids, shared with everything else that stores servers.
+     * @param excludedServers The servers excluded from the playtime calculation.
+     * @param instanceId      The id of this proxy from the {@link ClusterHandler}, stored in every created session.
+     * @param playerNames     The index updated with every registered player, may be null.
+     */
+    public PlaytimeHandler(Database database, ServerRegistry serverRegistry, List<String> excludedServers, int instanceId, PlayerNameIndex playerNames) {
         this.database = database;
-        if (excludedServers.isEmpty()) {
-            this.excludedServers = "";
-        } else {
-            this.excludedServers = excludedServers.stream().reduce("", (a, b) -> a + "'" + b + "',");
+        this.circuitBreaker = database.getCircuitBreaker();
+        this.instanceId = instanceId;
+        this.playerNames = playerNames;
+        this.serverRegistry = serverRegistry;
+        this.excludedServers = Set.copyOf(excludedServers);
+        resolveExcludedServers();
+    }
+
+    /**
+     * Resolves the excluded servers to their ids. Servers that can not be resolved, for example
+     * because the database is unavailable, are retried on the next call instead of being left out.
+     *
+     * @return true if all excluded servers are resolved.
+     */
+    private synchronized boolean resolveExcludedServers() {
+        if (sqlRecalculatePlaytimes != null) return true;
+        for (String serverName : excludedServers) {
+            int serverId = serverRegistry.getOrCreateId(serverName);
+            if (serverId < 0) return false;
+            excludedServerIds.set(serverId);
+        }
+
+        // recalculates the totals of all players from the playtime per server, without reading any session
+        String sql = """
+                UPDATE mi_bungee_player_playtime p
+                LEFT JOIN (
+                  SELECT player_uuid, SUM(playtime) AS total
+                  FROM mi_bungee_player_server_playtime
+                %s  GROUP BY player_uuid
+                ) t ON t.player_uuid = p.uuid
+                SET p.playtime = COALESCE(t.total, 0)
+                """;
+        String where = "";
+        if (!excludedServerIds.isEmpty()) {
+            where = "  WHERE server_id NOT IN (" + String.join(", ", Collections.nCopies(excludedServerIds.cardinality(), "?")) + ")\n";
+        }
+        sqlRecalculatePlaytimes = sql.formatted(where);
+        return true;
+    }
+
+    public ServerRegistry getServerRegistry() { return serverRegistry; }
+
+    /**
+     * Checks if the server is excluded from the playtime calculation.
+     *
+     * @param serverId The id of the server from the {@link ServerRegistry}.
+     * @return true if the server is excluded.
+     */
+    public boolean isExcludedServer(int serverId) {
+        if (serverId < 0) return false;
+        if (resolveExcludedServers()) return excludedServerIds.get(serverId);
+        String serverName = serverRegistry.getName(serverId);
+        return serverName != null && excludedServers.contains(serverName);
+    }
+
+    public boolean isExcludedServer(String serverName) {
+        return excludedServers.contains(serverName);
+    }
+
+    /**
+     * Checks if the totals were calculated with other excluded servers, for example because
+     * the configuration was changed while the proxy was offline.
+     *
+     * @return true if {@link #recalculatePlaytimes()} has to run, false if not or on a database error.
+     */
+    public boolean isRecalculationNeeded() {
+        if (!resolveExcludedServers()) return false;
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_SETTING)) {
+            ps.setString(1, APPLIED_EXCLUDED_SERVERS);
+            try (ResultSet rs = ps.executeQuery()) {
+                boolean needed = !rs.next() || !excludedServerIds.toString().equals(rs.getString(1));
+                circuitBreaker.recordSuccess();
+                return needed;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+            return false;
         }
     }
 
@@ -25,221 +265,458 @@ public class PlaytimeHandler {
      *
      * @param uuid       The unique identifier of the player.
      * @param playerName The current username of the player.
+     * @return true if the player was written, false on a database error.
      */
-    public void registerPlayer(UUID uuid, String playerName) {
-        String sql = """
-                INSERT INTO mi_bungee_player_playtime (uuid, username) VALUES (?, ?)
-                ON DUPLICATE KEY UPDATE username = ?;
-                """;
-        try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql);
+    public boolean registerPlayer(UUID uuid, String playerName) {
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_REGISTER_PLAYER)) {
             ps.setString(1, uuid.toString());
             ps.setString(2, playerName);
             ps.setString(3, playerName);
             ps.executeUpdate();
+            circuitBreaker.recordSuccess();
+            if (playerNames != null) playerNames.put(uuid, playerName);
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
+            circuitBreaker.recordError();
+            return false;
+        }
+    }
+
+    /**
+     * Reads the stored playtime and username of every player, ordered by their playtime.
+     *
+     * @param consumer Receives the players while they are read, no list of all players is kept.
+     * @return true if all players were read, false on a database error.
+     */
+    public boolean getPlayerTotals(Consumer<PlayerSnapshot.Entry> consumer) {
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_PLAYER_TOTALS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                consumer.accept(new PlayerSnapshot.Entry(UUID.fromString(rs.getString(1)), Objects.requireNonNullElse(rs.getString(2), ""), rs.getInt(3)));
+            }
+            circuitBreaker.recordSuccess();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+            return false;
         }
     }
 
     public int getPlayerPlaytime(UUID uuid) {
-        String sql = """
-                SELECT playtime from mi_bungee_player_playtime WHERE uuid = ?;
-                """;
-        try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_PLAYTIME)) {
             ps.setString(1, uuid.toString());
-            ps.executeQuery();
-            ps.getResultSet().next();
-            return ps.getResultSet().getInt(1);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                int playtime = rs.getInt(1);
+                circuitBreaker.recordSuccess();
+                return playtime;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            circuitBreaker.recordError();
             return -1;
         }
     }
 
+    /**
+     * Returns the stored playtime of many players, with one query per chunk of players.
+     *
+     * @param uuids The unique identifiers of the players.
+     * @return The playtime in seconds by player, players without a stored playtime are missing.
+     * @throws SQLException if the playtimes could not be read, so a failure is not mistaken for unknown players.
+     */
+    public Map<UUID, Integer> getPlayerPlaytimes(Collection<UUID> uuids) throws SQLException {
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(uuids));
+        Map<UUID, Integer> playtimes = new HashMap<>();
+        if (ids.isEmpty()) return playtimes;
+        try (Connection connection = database.getReadConnection()) {
+            for (int from = 0; from < ids.size(); from += SELECT_PLAYTIMES_CHUNK_SIZE) {
+                List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + SELECT_PLAYTIMES_CHUNK_SIZE));
+                // round up to a power of two, so only a few statements end up in the statement cache
+                int size = Integer.highestOneBit(chunk.size() * 2 - 1);
+                String placeholders = String.join(", ", Collections.nCopies(size, "?"));
+                try (PreparedStatement ps = connection.prepareStatement(SQL_SELECT_PLAYTIMES.formatted(placeholders))) {
+                    for (int index = 0; index < size; index++) {
+                        ps.setString(index + 1, chunk.get(Math.min(index, chunk.size() - 1)).toString());
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) playtimes.put(UUID.fromString(rs.getString(1)), rs.getInt(2));
+                    }
+                }
+            }
+            circuitBreaker.recordSuccess();
+        } catch (SQLException e) {
+            circuitBreaker.recordError();
+            throw e;
+        }
+        return playtimes;
+    }
+
+    /**
+     * Recalculates the playtime of a player from the sessions, stores the playtime per server
+     * and the total without the excluded servers.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return The playtime in seconds, or -1 on a database error.
+     */
     public int getPlayerCurrentPlaytime(UUID uuid) {
-        String sql_select;
-        if (excludedServers.isEmpty()) {
-            sql_select = """
-                SELECT
-                  ? AS player_uuid,
-                  SUM(
-                    CASE
-                      WHEN end_time IS NULL
-                        THEN TIMESTAMPDIFF(SECOND, start_time, UTC_TIMESTAMP())
-                      ELSE TIMESTAMPDIFF(SECOND, start_time, end_time)
-                    END
-                  ) AS total_seconds
-                FROM mi_bungee_player_playtime_sessions
-                WHERE player_uuid = ?
-                """;
-        } else {
-            sql_select = """
-                SELECT
-                  ? AS player_uuid,
-                  SUM(
-                    CASE
-                      WHEN end_time IS NULL
-                        THEN TIMESTAMPDIFF(SECOND, start_time, UTC_TIMESTAMP())
-                      ELSE TIMESTAMPDIFF(SECOND, start_time, end_time)
-                    END
-                  ) AS total_seconds
-                FROM mi_bungee_player_playtime_sessions
-                WHERE player_uuid = ?
-                AND servername NOT IN (%s)
-                """.formatted(excludedServers.substring(0, excludedServers.length() - 1));
+        try (Connection connection = database.getConnection();
+             PreparedStatement select = connection.prepareStatement(SQL_SELECT_SERVER_PLAYTIMES);
+             PreparedStatement upsert = connection.prepareStatement(SQL_UPSERT_SERVER_PLAYTIME);
+             PreparedStatement update = connection.prepareStatement(SQL_UPDATE_PLAYTIME)) {
+            select.setString(1, uuid.toString());
+            long calcPlaytime = 0;
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    int serverId = rs.getInt(1);
+                    int playtime = Math.max(0, rs.getInt(2));
+                    upsert.setString(1, uuid.toString());
+                    upsert.setInt(2, serverId);
+                    upsert.setInt(3, playtime);
+                    upsert.addBatch();
+                    if (!isExcludedServer(serverId)) calcPlaytime += playtime;
+                }
+            }
+            upsert.executeBatch();
+            int playtime = (int) Math.min(Integer.MAX_VALUE, calcPlaytime);
+            update.setInt(1, playtime);
+            update.setString(2, uuid.toString());
+            update.executeUpdate();
+            circuitBreaker.recordSuccess();
+            return playtime;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+            return -1;
         }
+    }
 
-        String sql_update = """
-                UPDATE mi_bungee_player_playtime SET playtime = ? WHERE uuid = ?;
-                """;
-        try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql_select);
-            ps.setString(1, uuid.toString());
-            ps.setString(2, uuid.toString());
-            ps.executeQuery();
-            ps.getResultSet().next();
-            int calcPlaytime = ps.getResultSet().getInt(2);
-            PreparedStatement ps2 = connection.prepareStatement(sql_update);
-            ps2.setInt(1, calcPlaytime);
-            ps2.setString(2, uuid.toString());
-            ps2.executeUpdate();
-            return calcPlaytime;
+    /**
+     * Recalculates the stored playtime of all players from the playtime per server,
+     * for example after the excluded servers were changed. This only reads the small per server table,
+     * the playtime per server is as recent as the last calculation of each player.
+     *
+     * The excluded servers are stored with the totals, see {@link #isRecalculationNeeded()}.
+     *
+     * @return The amount of updated players, or -1 on a database error.
+     */
+    public int recalculatePlaytimes() {
+        if (!resolveExcludedServers()) return -1;
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sqlRecalculatePlaytimes);
+             PreparedStatement setting = connection.prepareStatement(SQL_UPSERT_SETTING)) {
+            int index = 1;
+            for (int serverId = excludedServerIds.nextSetBit(0); serverId >= 0; serverId = excludedServerIds.nextSetBit(serverId + 1)) {
+                ps.setInt(index++, serverId);
+            }
+            int players = ps.executeUpdate();
+            setting.setString(1, APPLIED_EXCLUDED_SERVERS);
+            setting.setString(2, excludedServerIds.toString());
+            setting.executeUpdate();
+            circuitBreaker.recordSuccess();
+            return players;
         } catch (SQLException e) {
             e.printStackTrace();
+            circuitBreaker.recordError();
             return -1;
         }
     }
 
     public int startPlaytime(UUID uuid, String serverName) {
-        String sql_insert = """
-                Insert into mi_bungee_player_playtime_sessions (player_uuid, servername) values (?, ?);
-                """;
-        String sql_select = """
-                SELECT id FROM mi_bungee_player_playtime_sessions
-                          WHERE player_uuid = ? ORDER BY id DESC LIMIT 1;
-                """;
-        try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql_insert);
+        int serverId = serverRegistry.getOrCreateId(serverName);
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_START_SESSION, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, uuid.toString());
-            ps.setString(2, serverName);
+            if (serverId < 0) ps.setNull(2, Types.SMALLINT);
+            else ps.setInt(2, serverId);
+            if (instanceId < 0) ps.setNull(3, Types.SMALLINT);
+            else ps.setInt(3, instanceId);
             ps.executeUpdate();
 
-            PreparedStatement pst = connection.prepareStatement(sql_select);
-            pst.setString(1, uuid.toString());
-            pst.executeQuery();
-            pst.getResultSet().next();
-            return pst.getResultSet().getInt(1);
-
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                int sessionId = keys.getInt(1);
+                circuitBreaker.recordSuccess();
+                return sessionId;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            circuitBreaker.recordError();
             return -1;
         }
     }
 
+    /**
+     * Stores a session that was counted in memory while the database was unavailable.
+     *
+     * @param uuid        The unique identifier of the player.
+     * @param serverName  The server of the session.
+     * @param startMillis The start of the session, in milliseconds since the epoch.
+     * @param endMillis   The end of the session, in milliseconds since the epoch.
+     * @return true if the session was stored.
+     */
+    public boolean insertClosedSession(UUID uuid, String serverName, long startMillis, long endMillis) {
+        int serverId = serverRegistry.getOrCreateId(serverName);
+        long now = System.currentTimeMillis();
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_INSERT_CLOSED_SESSION)) {
+            ps.setString(1, uuid.toString());
+            if (serverId < 0) ps.setNull(2, Types.SMALLINT);
+            else ps.setInt(2, serverId);
+            if (instanceId < 0) ps.setNull(3, Types.SMALLINT);
+            else ps.setInt(3, instanceId);
+            ps.setLong(4, Math.max(0, (now - startMillis) / 1000));
+            ps.setLong(5, Math.max(0, (now - endMillis) / 1000));
+            ps.executeUpdate();
+            circuitBreaker.recordSuccess();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+            return false;
+        }
+    }
+
+    /**
+     * Sets the end of the open session to now, capped like in {@link #stopPlaytime(int)}.
+     *
+     * @param sessionId The id of the session.
+     */
     public void updatePlaytime(int sessionId) {
-        stopPlaytime(sessionId);
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_UPDATE_SESSION)) {
+            ps.setInt(1, sessionId);
+            ps.setInt(2, sessionId);
+            ps.executeUpdate();
+            circuitBreaker.recordSuccess();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+        }
     }
 
+    /**
+     * Sets the end of the session to now.
+     * If the player already started a newer session, for example on another proxy, the end is
+     * capped at the start of that session, so sessions of one player never overlap.
+     *
+     * @param sessionId The id of the session.
+     */
     public void stopPlaytime(int sessionId) {
-        String sql = """
-                UPDATE mi_bungee_player_playtime_sessions SET end_time = UTC_TIMESTAMP() WHERE id = ?;
-                """;
-        try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_STOP_SESSION)) {
             ps.setInt(1, sessionId);
+            ps.setInt(2, sessionId);
             ps.executeUpdate();
+            circuitBreaker.recordSuccess();
         } catch (SQLException e) {
             e.printStackTrace();
+            circuitBreaker.recordError();
         }
     }
 
-    public void reloadAllPlayers() {
-        String sql = """
-                SELECT uuid from mi_bungee_player_playtime
-                """;
+    /**
+     * Closes many sessions at once, like {@link #stopPlaytime(int)} does for one.
+     * The sessions are closed in chunks of one statement each, all chunks together may take at most
+     * {@code timeoutMillis}. Sessions that could not be closed in time stay open and are closed by
+     * {@link #recoverOpenSessions()} on the next start.
+     *
+     * @param sessionIds    The ids of the sessions.
+     * @param timeoutMillis The time budget for all statements.
+     * @return The amount of closed sessions.
+     */
+    public int stopPlaytimes(Collection<Integer> sessionIds, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<Integer> ids = new ArrayList<>(sessionIds);
+        int closed = 0;
         try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql);
-            ps.executeQuery();
-            while (ps.getResultSet().next()) {
-                UUID uuid = UUID.fromString(ps.getResultSet().getString(1));
+            for (int from = 0; from < ids.size(); from += STOP_SESSIONS_CHUNK_SIZE) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + STOP_SESSIONS_CHUNK_SIZE));
+                // padded to a power of two with the last id, like in getPlayerPlaytimes
+                int size = Integer.highestOneBit(chunk.size() * 2 - 1);
+                String placeholders = String.join(", ", Collections.nCopies(size, "?"));
+                try (PreparedStatement ps = connection.prepareStatement(SQL_STOP_SESSIONS.formatted(placeholders, placeholders))) {
+                    ps.setQueryTimeout((int) Math.max(1, remaining / 1000));
+                    for (int round = 0; round < 2; round++) {
+                        for (int index = 0; index < size; index++) {
+                            ps.setInt(round * size + index + 1, chunk.get(Math.min(index, chunk.size() - 1)));
+                        }
+                    }
+                    ps.executeUpdate();
+                    closed += chunk.size();
+                }
+            }
+            circuitBreaker.recordSuccess();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+        }
+        return closed;
+    }
+
+    /**
+     * Closes the sessions this proxy left open, for example after a crash.
+     * The end of these sessions stays at their last update, they are marked as closed by the recovery.
+     *
+     * @return The amount of recovered sessions, or -1 on a database error.
+     */
+    public int recoverOpenSessions() {
+        if (instanceId < 0) return 0;
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_RECOVER_SESSIONS)) {
+            ps.setInt(1, instanceId);
+            int recovered = ps.executeUpdate();
+            circuitBreaker.recordSuccess();
+            return recovered;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+            return -1;
+        }
+    }
+
+    public void reloadAllPlayers() {
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_ALL_PLAYERS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                UUID uuid = UUID.fromString(rs.getString(1));
                 getPlayerCurrentPlaytime(uuid);
             }
+            circuitBreaker.recordSuccess();
         } catch (SQLException e) {
+            circuitBreaker.recordError();
             throw new RuntimeException(e);
         }
     }
 
     public Map<String, Integer> getTopPlayers(int amount) {
-        String sql = """
-                SELECT username, playtime FROM mi_bungee_player_playtime ORDER BY playtime DESC LIMIT ?;
-                """;
-        try(Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_TOP_PLAYERS)) {
             ps.setInt(1, amount);
-            ps.executeQuery();
-            Map<String, Integer> resultMap = new HashMap<>();
-            while (ps.getResultSet().next()) {
-                resultMap.put(ps.getResultSet().getString(1), ps.getResultSet().getInt(2));
+            Map<String, Integer> resultMap = new LinkedHashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    resultMap.put(rs.getString(1), rs.getInt(2));
+                }
             }
+            circuitBreaker.recordSuccess();
             return resultMap;
         } catch (SQLException e) {
             e.printStackTrace();
-            return new HashMap<>();
+            circuitBreaker.recordError();
+            return new LinkedHashMap<>();
         }
     }
 
     public PlaytimeSession getPlaytimeSession(int sessionId) {
-        String sql = """
-                SELECT * FROM mi_bungee_player_playtime_sessions WHERE id = ?;;
-                """;
-        try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_SESSION)) {
             ps.setInt(1, sessionId);
-            ps.executeQuery();
-            ps.getResultSet().next();
-            return new PlaytimeSession(
-                    ps.getResultSet().getInt(1),
-                    ps.getResultSet().getString(2),
-                    ps.getResultSet().getString(3),
-                    ps.getResultSet().getTimestamp(4),
-                    ps.getResultSet().getTimestamp(5),
-                    ps.getResultSet().getInt(6)
-            );
+            try (ResultSet rs = ps.executeQuery()) {
+                PlaytimeSession session = rs.next() ? readSession(rs) : null;
+                circuitBreaker.recordSuccess();
+                return session;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            circuitBreaker.recordError();
             return null;
         }
     }
 
     public List<PlaytimeSession> getPlaytimeSessions(UUID uuid) {
-        String sql = """
-                SELECT * FROM mi_bungee_player_playtime_sessions WHERE player_uuid = ?;
-                """;
-        try (Connection connection = database.getConnection()) {
-            PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement ps = connection.prepareStatement(SQL_SELECT_SESSIONS)) {
             ps.setString(1, uuid.toString());
-            ps.executeQuery();
             List<PlaytimeSession> resultList = new ArrayList<>();
-            while (ps.getResultSet().next()) {
-                resultList.add(new PlaytimeSession(
-                        ps.getResultSet().getInt(1),
-                        ps.getResultSet().getString(2),
-                        ps.getResultSet().getString(3),
-                        ps.getResultSet().getTimestamp(4),
-                        ps.getResultSet().getTimestamp(5),
-                        ps.getResultSet().getInt(6)
-                ));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    resultList.add(readSession(rs));
+                }
             }
+            circuitBreaker.recordSuccess();
             return resultList;
         } catch (SQLException e) {
             e.printStackTrace();
+            circuitBreaker.recordError();
             return new ArrayList<>();
         }
     }
 
-    static class PlaytimeSession {
+    /**
+     * Streams the sessions of a player that started inside the given time range, newest first.
+     * The rows are fetched page by page with a seek on {@code (start_time, id)}, so only
+     * {@code pageSize} rows are held in memory at once and the composite
+     * {@code (player_uuid, start_time)} index is used for every page.
+     *
+     * @param uuid     The unique identifier of the player.
+     * @param from     Inclusive lower bound of the session start time (UTC).
+     * @param to       Exclusive upper bound of the session start time (UTC).
+     * @param pageSize The amount of rows fetched per round trip.
+     * @param consumer Receives every session in order.
+     * @return The amount of sessions passed to the consumer, or -1 on a database error.
+     */
+    public int getPlaytimeSessions(UUID uuid, Timestamp from, Timestamp to, int pageSize, Consumer<PlaytimeSession> consumer) {
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize must be positive");
+        int count = 0;
+        try (Connection connection = database.getReadConnection();
+             PreparedStatement first = connection.prepareStatement(SQL_SELECT_SESSIONS_FIRST_PAGE);
+             PreparedStatement next = connection.prepareStatement(SQL_SELECT_SESSIONS_NEXT_PAGE)) {
+            first.setString(1, uuid.toString());
+            first.setTimestamp(2, from);
+            first.setTimestamp(3, to);
+            first.setInt(4, pageSize);
+            PreparedStatement ps = first;
+            while (true) {
+                int rows = 0;
+                PlaytimeSession last = null;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        last = readSession(rs);
+                        consumer.accept(last);
+                        rows++;
+                    }
+                }
+                count += rows;
+                if (rows < pageSize) {
+                    circuitBreaker.recordSuccess();
+                    return count;
+                }
+                next.setString(1, uuid.toString());
+                next.setTimestamp(2, from);
+                next.setTimestamp(3, last.start_time);
+                next.setTimestamp(4, last.start_time);
+                next.setInt(5, last.sessionId);
+                next.setInt(6, pageSize);
+                ps = next;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            circuitBreaker.recordError();
+            return -1;
+        }
+    }
+
+    private static PlaytimeSession readSession(ResultSet rs) throws SQLException {
+        return new PlaytimeSession(
+                rs.getInt(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getTimestamp(4),
+                rs.getTimestamp(5),
+                rs.getInt(6)
+        );
+    }
+
+    public static class PlaytimeSession {
 
         public int sessionId;
         public String playerUuid;
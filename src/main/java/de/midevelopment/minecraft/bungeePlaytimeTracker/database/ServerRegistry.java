@@ -0,0 +1,107 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the server names known to the network.
+ * Every server name is stored once in {@code mi_bungee_servers} and referenced by its small
+ * integer id from the session rows. Known ids are cached, so resolving a name only hits the
+ * database the first time a server is seen.
+ */
+public class ServerRegistry {
+
+    private final Database database;
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    public ServerRegistry(Database database) {
+        this.database = database;
+        loadAll();
+    }
+
+    /**
+     * Loads all known servers into the cache.
+     */
+    public void loadAll() {
+        String sql = """
+                SELECT id, name FROM mi_bungee_servers;
+                """;
+        try (Connection connection = database.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                idsByName.put(rs.getString(2), rs.getInt(1));
+                namesById.put(rs.getInt(1), rs.getString(2));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the id of the server, registering it in the dictionary if it is not known yet.
+     *
+     * @param serverName The name of the server how it is registered in BungeeCord.
+     * @return The id of the server, or -1 if it could not be resolved.
+     */
+    public int getOrCreateId(String serverName) {
+        Integer cached = idsByName.get(serverName);
+        if (cached != null) return cached;
+
+        String sql_insert = """
+                INSERT IGNORE INTO mi_bungee_servers (name) VALUES (?);
+                """;
+        String sql_select = """
+                SELECT id FROM mi_bungee_servers WHERE name = ?;
+                """;
+        try (Connection connection = database.getConnection();
+             PreparedStatement insert = connection.prepareStatement(sql_insert);
+             PreparedStatement select = connection.prepareStatement(sql_select)) {
+            insert.setString(1, serverName);
+            insert.executeUpdate();
+            select.setString(1, serverName);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) return -1;
+                int id = rs.getInt(1);
+                idsByName.put(serverName, id);
+                namesById.put(id, serverName);
+                return id;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the id of the server if it is already known.
+     *
+     * @param serverName The name of the server.
+     * @return The id of the server, or -1 if the server is unknown.
+     */
+    public int getId(String serverName) {
+        return idsByName.getOrDefault(serverName, -1);
+    }
+
+    /**
+     * Returns the name of a server by its id, reloading the dictionary once if the id is unknown,
+     * for example because another proxy registered the server.
+     *
+     * @param serverId The id of the server.
+     * @return The name of the server, or null if the id is unknown.
+     */
+    public String getName(int serverId) {
+        String name = namesById.get(serverId);
+        if (name == null) {
+            loadAll();
+            name = namesById.get(serverId);
+        }
+        return name;
+    }
+
+}
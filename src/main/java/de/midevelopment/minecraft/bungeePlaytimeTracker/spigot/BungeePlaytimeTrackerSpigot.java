@@ -10,31 +10,50 @@ import static de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint.getDat
 
 public class BungeePlaytimeTrackerSpigot extends JavaPlugin {
 
+    private static final long REPLICA_CHECK_TICKS = 20;
+
     @Override
     public void onEnable() {
         // Plugin startup logic
         reloadConfig();
         saveDefaultConfig();
         FileConfiguration config = getConfig();
-        LocaleHandler.loadLocale(config.getString("language"));
+        LocaleHandler.loadLocale(config.getString("language"), config.getBoolean("per-player-language"));
+        // backends only serve placeholders, they get their own small pools
+        int poolSize = config.getInt("backend.pool-size", 2);
+        SharePoint.getDatabase().setMinimumIdle(config.getInt("backend.minimum-idle", 0));
         SharePoint.getDatabase().init(
                 config.getString("database.host"),
                 config.getInt("database.port"),
                 config.getString("database.database"),
                 config.getString("database.username"),
                 config.getString("database.password"),
-                false
+                false,
+                poolSize
         );
+        if (config.getBoolean("database.replica.enabled")) {
+            SharePoint.getDatabase().initReplica(
+                    config.getString("database.replica.host"),
+                    config.getInt("database.replica.port"),
+                    config.getString("database.replica.database"),
+                    config.getString("database.replica.username"),
+                    config.getString("database.replica.password"),
+                    false,
+                    poolSize,
+                    config.getInt("database.replica.max-lag-seconds")
+            );
+            getServer().getScheduler().runTaskTimerAsynchronously(this, SharePoint.getDatabase()::checkReplica, REPLICA_CHECK_TICKS, REPLICA_CHECK_TICKS);
+        }
         SharePoint.setPlaytimeHandler(new PlaytimeHandler(
                 SharePoint.getDatabase(),
                 config.getStringList("exclude-servers")
         ));
-        new PlaceholderAPIWrapper().register();
+        new PlaceholderAPIWrapper(this).register();
     }
 
     @Override
     public void onDisable() {
-
+        SharePoint.getDatabase().shutdown();
     }
 
 }
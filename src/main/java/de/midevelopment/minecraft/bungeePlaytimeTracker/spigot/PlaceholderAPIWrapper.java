@@ -1,12 +1,38 @@
 package de.midevelopment.minecraft.bungeePlaytimeTracker.spigot;
 
 import de.midevelopment.minecraft.bungeePlaytimeTracker.SharePoint;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.LocaleHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.SingleFlight;
 import de.midevelopment.minecraft.bungeePlaytimeTracker.utils.TimeConverter;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 public class PlaceholderAPIWrapper extends PlaceholderExpansion {
 
+    private static final long REFRESH_MILLIS = 30_000;
+    // players whose playtime was not loaded for this long are dropped, for example after leaving
+    private static final long EXPIRE_MILLIS = 600_000;
+
+    /**
+     * Several plugins often resolve placeholders of the same player at the same moment,
+     * they share one query instead of each running their own.
+     */
+    private final SingleFlight<UUID, Integer> playtimeLookups = new SingleFlight<>();
+    // placeholders are resolved on the main thread, so they are answered from here and refreshed asynchronously
+    private final Map<UUID, CachedPlaytime> playtimes = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    public PlaceholderAPIWrapper(Plugin plugin) {
+        this.executor = task -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
+    }
+
     @Override
     public String getIdentifier() {
         return "playtimetracker";
@@ -26,21 +52,44 @@ public class PlaceholderAPIWrapper extends PlaceholderExpansion {
     @Override
     public String onPlaceholderRequest(Player player, String identifier) {
         if (player == null) return "";
+        Locale locale = LocaleHandler.parseLocale(player.getLocale());
+        UUID uuid = player.getUniqueId();
+        CachedPlaytime cached = playtimes.get(uuid);
+        if (cached == null || System.currentTimeMillis() - cached.loadedAt() >= REFRESH_MILLIS) refresh(uuid);
+        // nothing is shown until the first lookup of the player is done
+        if (cached == null) return "";
+        int playtime = cached.seconds();
         switch (identifier) {
             case "short":
                 return String.valueOf(TimeConverter.convertDurationToTimeStringShort(
-                        TimeConverter.convertSecondsToDuration(SharePoint.getPlaytimeHandler().getPlayerPlaytime(player.getUniqueId()))
+                        TimeConverter.convertSecondsToDuration(playtime),
+                        locale
                 ));
             case "normal":
                 return String.valueOf(TimeConverter.convertDurationToTimeString(
-                        TimeConverter.convertSecondsToDuration(SharePoint.getPlaytimeHandler().getPlayerPlaytime(player.getUniqueId()))
+                        TimeConverter.convertSecondsToDuration(playtime),
+                        locale
                 ));
             case "long":
                 return String.valueOf(TimeConverter.getDetailedTimeString(
-                        TimeConverter.convertSecondsToDuration(SharePoint.getPlaytimeHandler().getPlayerPlaytime(player.getUniqueId()))
+                        TimeConverter.convertSecondsToDuration(playtime),
+                        locale
                 ));
             default:
-                return String.valueOf(SharePoint.getPlaytimeHandler().getPlayerPlaytime(player.getUniqueId()));
+                return String.valueOf(playtime);
         }
     }
+
+    private void refresh(UUID uuid) {
+        playtimeLookups.get(uuid, () -> SharePoint.getPlaytimeHandler().getPlayerPlaytime(uuid), executor)
+                .thenAccept(playtime -> {
+                    long now = System.currentTimeMillis();
+                    // on a database error the last value is kept and loaded again with the next request
+                    if (playtime >= 0) playtimes.put(uuid, new CachedPlaytime(playtime, now));
+                    playtimes.values().removeIf(cached -> now - cached.loadedAt() >= EXPIRE_MILLIS);
+                });
+    }
+
+    private record CachedPlaytime(int seconds, long loadedAt) {
+    }
 }
@@ -0,0 +1,125 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
+
+import java.util.UUID;
+
+/**
+ * Compact registry of the players whose row and username are already stored in the database,
+ * so a login only writes for new players or renamed players.
+ * <p>
+ * The players are kept in an open addressing hash table of primitive arrays, a player takes 32 bytes
+ * instead of the objects of a {@code Map<UUID, String>}. The username is stored as its bytes packed into two longs,
+ * which fits every Minecraft name. Names that cannot be packed, longer or with other than ASCII characters,
+ * are not stored, so these players are written on every login.
+ */
+public class KnownPlayerRegistry {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_NAME_LENGTH = 16;
+    // never produced by a packed name, its bytes are not ASCII
+    private static final long NO_NAME = -1L;
+
+    // two longs per slot, the nil UUID marks an empty slot and is never a player
+    private long[] uuids = new long[INITIAL_CAPACITY * 2];
+    // two longs per slot, the bytes of the name or NO_NAME
+    private long[] names = new long[INITIAL_CAPACITY * 2];
+    private int size;
+
+    /**
+     * @param uuid The unique identifier of the player.
+     * @param name The current name of the player.
+     * @return true if the player is stored with exactly this name.
+     */
+    public synchronized boolean isKnown(UUID uuid, String name) {
+        int slot = find(uuid);
+        return !isEmpty(slot) && canPack(name)
+                && names[slot * 2] == pack(name, 0) && names[slot * 2 + 1] == pack(name, 8);
+    }
+
+    /**
+     * Remembers a player after it was read from or written to the database.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param name The stored name of the player.
+     */
+    public synchronized void put(UUID uuid, String name) {
+        if (uuid.getMostSignificantBits() == 0 && uuid.getLeastSignificantBits() == 0) return;
+        if ((size + 1) * 4L > capacity() * 3L) grow();
+        int slot = find(uuid);
+        if (isEmpty(slot)) {
+            uuids[slot * 2] = uuid.getMostSignificantBits();
+            uuids[slot * 2 + 1] = uuid.getLeastSignificantBits();
+            size++;
+        }
+        boolean packed = canPack(name);
+        names[slot * 2] = packed ? pack(name, 0) : NO_NAME;
+        names[slot * 2 + 1] = packed ? pack(name, 8) : NO_NAME;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private int capacity() {
+        return uuids.length / 2;
+    }
+
+    /**
+     * @return the slot of the player, or the empty slot where it belongs
+     */
+    private int find(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        int mask = capacity() - 1;
+        int slot = mix(most ^ least) & mask;
+        while (!isEmpty(slot) && (uuids[slot * 2] != most || uuids[slot * 2 + 1] != least)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean isEmpty(int slot) {
+        return uuids[slot * 2] == 0 && uuids[slot * 2 + 1] == 0;
+    }
+
+    private void grow() {
+        long[] oldUuids = uuids;
+        long[] oldNames = names;
+        uuids = new long[oldUuids.length * 2];
+        names = new long[oldNames.length * 2];
+        for (int slot = 0; slot < oldUuids.length / 2; slot++) {
+            if (oldUuids[slot * 2] == 0 && oldUuids[slot * 2 + 1] == 0) continue;
+            int target = find(new UUID(oldUuids[slot * 2], oldUuids[slot * 2 + 1]));
+            uuids[target * 2] = oldUuids[slot * 2];
+            uuids[target * 2 + 1] = oldUuids[slot * 2 + 1];
+            names[target * 2] = oldNames[slot * 2];
+            names[target * 2 + 1] = oldNames[slot * 2 + 1];
+        }
+    }
+
+    private static boolean canPack(String name) {
+        if (name.length() > MAX_NAME_LENGTH) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == 0 || c > 0x7f) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the eight characters of the name from {@code offset} as bytes, missing characters are 0
+     */
+    private static long pack(String name, int offset) {
+        long packed = 0;
+        for (int i = Math.min(name.length(), offset + 8) - 1; i >= offset; i--) {
+            packed = packed << 8 | name.charAt(i);
+        }
+        return packed;
+    }
+
+    private static int mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+}
@@ -7,10 +7,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class LocaleHandler {
 
@@ -21,6 +22,11 @@ public class LocaleHandler {
      * In this implementation, the base locale is set to English ("en").
      */
     private static final String BASE_LOCALE = "en";
+    /**
+     * All locales shipped with the plugin. Every one of them is loaded by
+     * {@link LocaleHandler#loadLocale(String, boolean)}, so players can get messages in their own language.
+     */
+    public static final List<String> SUPPORTED_LOCALES = List.of("en", "de", "es", "fr", "it", "nl", "pl");
     /**
      * The constant directory path where locale files are stored.
      * This path is used to construct the full resource path for loading locale files.
@@ -45,82 +51,138 @@ public class LocaleHandler {
     private static final Type LOCALE_MAP_TYPE = new TypeToken<Map<String, String>>() {}.getType();
 
     /**
-     * A thread-safe map used to store locale-based translations.
-     * The keys represent translation keys, while the values represent their corresponding
-     * translations in the currently loaded locale.
-     *
-     * This map is populated and updated dynamically when a locale is loaded using the
-     * {@link LocaleHandler#loadLocale(String)} method. It contains fallback translations from the
-     * base locale and, if applicable, localized translations from the selected locale file.
-     *
-     * The {@link LocaleHandler#get(String)} method allows retrieval of translations
-     * from this map. In the case where a translation key is not found in the map,
-     * the key itself will be returned as a fallback.
+     * The currently active translations.
+     * A snapshot is never modified after it was built. {@link LocaleHandler#loadLocale(String, boolean)}
+     * builds a complete new snapshot and replaces this reference at once, so concurrent calls of
+     * {@link LocaleHandler#get(MessageKey)} always see a fully loaded set of translations.
      */
-    private static final Map<String, String> translations = new ConcurrentHashMap<>();
+    private static volatile Snapshot snapshot = emptySnapshot();
 
     /**
-     * Loads the specified locale into the application's translation map.
-     * The method first loads the base locale and then applies translations
-     * from the specified locale if it differs from the base locale.
+     * Loads all supported locales and uses the specified locale as default.
+     * Every locale table is built from the base locale, overlaid with the translations of the locale itself.
      *
-     * @param localeKey the key representing the desired locale. It must not be null
+     * @param localeKey the key representing the default locale. It must not be null
      *                  and is processed as a lowercase, trimmed string.
+     * @param usePlayerLocale if true, players get messages in the language of their client when it is supported
      * @throws NullPointerException if the localeKey is null.
-     * @throws RuntimeException if a failure occurs while loading or merging the locale file.
+     * @throws RuntimeException if a failure occurs while loading or merging the locale file,
+     *                          the previous translations stay active in that case.
      */
-    public static synchronized void loadLocale(String localeKey) {
+    public static synchronized void loadLocale(String localeKey, boolean usePlayerLocale) {
         Objects.requireNonNull(localeKey, "localeKey must not be null");
         final String normalizedLocale = localeKey.trim().toLowerCase(Locale.ROOT);
 
         try {
-            translations.clear();
-            mergeLocaleFromResource(resourcePathFor(BASE_LOCALE), false, BASE_LOCALE);
+            Map<String, String> base = readLocaleFromResource(resourcePathFor(BASE_LOCALE), false, BASE_LOCALE);
+            Map<String, String[]> tables = new HashMap<>();
+            for (String locale : SUPPORTED_LOCALES) {
+                tables.put(locale, buildTable(base, readLocaleFromResource(resourcePathFor(locale), false, locale)));
+            }
 
-            if (!normalizedLocale.equals(BASE_LOCALE)) {
-                mergeLocaleFromResource(resourcePathFor(normalizedLocale), true, normalizedLocale);
+            String[] defaultTable = tables.get(normalizedLocale);
+            if (defaultTable == null) {
+                defaultTable = buildTable(base, readLocaleFromResource(resourcePathFor(normalizedLocale), true, normalizedLocale));
             }
+            snapshot = new Snapshot(Map.copyOf(tables), defaultTable, usePlayerLocale);
         } catch (Exception e) {
             throw new RuntimeException("Failed to load locale: " + localeKey, e);
         }
     }
 
     /**
-     * Retrieves the translation associated with the specified key. If the key does not have a translation,
-     * the key itself is returned as the default value.
+     * Loads the specified locale as default for every player.
+     *
+     * @see LocaleHandler#loadLocale(String, boolean)
+     */
+    public static void loadLocale(String localeKey) {
+        loadLocale(localeKey, false);
+    }
+
+    /**
+     * Retrieves the translation of the specified key in the default locale. If the key does not have a translation,
+     * the key itself is returned.
      *
-     * @param key the translation key, must not be null
+     * @param key the message key, must not be null
      * @return the translated value if the key exists, otherwise the key itself
-     * @throws NullPointerException if the provided key is null
      */
-    public static String get(String key) {
-        Objects.requireNonNull(key, "translation key must not be null");
-        return translations.getOrDefault(key, key);
+    public static String get(MessageKey key) {
+        return snapshot.defaultTable[key.ordinal()];
+    }
+
+    /**
+     * Retrieves the translation of the specified key in the given locale.
+     * Falls back to the default locale if the locale is null, not supported or
+     * per-player languages are disabled.
+     *
+     * @param key    the message key, must not be null
+     * @param locale the locale of the player, may be null
+     * @return the translated value if the key exists, otherwise the key itself
+     */
+    public static String get(MessageKey key, Locale locale) {
+        return tableFor(locale)[key.ordinal()];
+    }
+
+    /**
+     * Parses a client locale like {@code en_us} as sent by Minecraft clients.
+     *
+     * @param clientLocale the locale string of the client, may be null
+     * @return the parsed locale, or null if none is given
+     */
+    public static Locale parseLocale(String clientLocale) {
+        if (clientLocale == null || clientLocale.isEmpty()) return null;
+        return Locale.forLanguageTag(clientLocale.replace('_', '-'));
     }
 
     // --- Helper ---
 
+    private static String[] tableFor(Locale locale) {
+        Snapshot current = snapshot;
+        if (locale == null || !current.usePlayerLocale) return current.defaultTable;
+        String[] table = current.tables.get(locale.getLanguage());
+        return table != null ? table : current.defaultTable;
+    }
+
+    /**
+     * Resolves every {@link MessageKey} into an array indexed by its ordinal.
+     * Keys missing in the locale are taken from the base locale, keys missing in both resolve to the key itself.
+     */
+    private static String[] buildTable(Map<String, String> base, Map<String, String> locale) {
+        MessageKey[] keys = MessageKey.values();
+        String[] table = new String[keys.length];
+        for (MessageKey key : keys) {
+            String value = locale.get(key.getKey());
+            if (value == null) value = base.getOrDefault(key.getKey(), key.getKey());
+            table[key.ordinal()] = value;
+        }
+        return table;
+    }
+
+    private static Snapshot emptySnapshot() {
+        String[] table = buildTable(Map.of(), Map.of());
+        return new Snapshot(Map.of(), table, false);
+    }
+
     /**
-     * Merges locale-specific translations from a specified resource file into the existing translations map.
+     * Reads locale-specific translations from a specified resource file.
      *
      * @param resourcePath the path of the resource file containing locale translations
      * @param required specifies whether the resource file is mandatory; if true and the resource is missing,
      *                 a RuntimeException will be thrown
      * @param localeForMessage the name of the locale being processed, used in error messaging
+     * @return the translations of the file, or an empty map if an optional file is missing
      */
-    private static void mergeLocaleFromResource(String resourcePath, boolean required, String localeForMessage) {
+    private static Map<String, String> readLocaleFromResource(String resourcePath, boolean required, String localeForMessage) {
         try (InputStream inputStream = openResourceStream(resourcePath)) {
             if (inputStream == null) {
                 if (required) {
                     throw new RuntimeException("Locale file not found: " + localeForMessage);
                 }
-                return;
+                return Map.of();
             }
             try (InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
                 Map<String, String> loaded = GSON.fromJson(reader, LOCALE_MAP_TYPE);
-                if (loaded != null) {
-                    translations.putAll(loaded);
-                }
+                return loaded != null ? loaded : Map.of();
             }
         } catch (RuntimeException re) {
             throw re;
@@ -148,4 +210,14 @@ public class LocaleHandler {
     private static String resourcePathFor(String locale) {
         return LOCALE_DIR + locale + FILE_SUFFIX;
     }
-}
\ No newline at end of file
+
+    /**
+     * An immutable set of loaded translations.
+     *
+     * @param tables          the translation tables of all supported locales by language
+     * @param defaultTable    the translation table of the configured locale
+     * @param usePlayerLocale whether the locale of the player is used if it is supported
+     */
+    private record Snapshot(Map<String, String[]> tables, String[] defaultTable, boolean usePlayerLocale) {
+    }
+}
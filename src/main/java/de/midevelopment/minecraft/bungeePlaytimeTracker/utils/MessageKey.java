@@ -0,0 +1,48 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
+
+/**
+ * All message keys used by the plugin.
+ * Each constant maps to the key inside the locale files under {@code /locale/*.json},
+ * while its ordinal is the index of the translation inside a loaded locale table.
+ */
+public enum MessageKey {
+
+    UNKNOWN("unknown"),
+    PLAYER_ONLY("player_only"),
+    PLAYER_NOT_FOUND("player_not_found"),
+    PLAYTIME("playtime"),
+    PLAYTIME_LEADERBOARD("playtime_leaderboard"),
+    DAY("day"),
+    DAYS("days"),
+    HOUR("hour"),
+    HOURS("hours"),
+    MINUTE("minute"),
+    MINUTES("minutes"),
+    SECOND("second"),
+    SECONDS("seconds"),
+    AND("and"),
+    PLAYTIME_HISTORY("playtime_history"),
+    HISTORY_EMPTY("history_empty"),
+    HISTORY_TOTAL("history_total"),
+    STATS_TITLE("stats_title"),
+    STATS_UNIQUE_PLAYERS("stats_unique_players"),
+    STATS_SERVERS("stats_servers"),
+    STATS_SESSION_LENGTHS("stats_session_lengths"),
+    STATS_PEAK("stats_peak"),
+    COMMAND_BUSY("command_busy"),
+    HISTORY_ERROR("history_error"),
+    PLAYER_USAGE("player_usage");
+
+    private final String key;
+
+    MessageKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the key of this message inside the locale files
+     */
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,73 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory index of all known player names, case-insensitive and sorted.
+ * Name lookups and prefix completions are answered from memory instead of running
+ * {@code LIKE 'prefix%'} queries while a player types.
+ * If a name was used by several players, the player registered last owns it.
+ */
+public class PlayerNameIndex {
+
+    private final ConcurrentSkipListMap<String, Entry> byName = new ConcurrentSkipListMap<>();
+    private final Map<UUID, String> nameByUuid = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a player or updates their name.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param name The current name of the player.
+     */
+    public synchronized void put(UUID uuid, String name) {
+        String previous = nameByUuid.put(uuid, name);
+        if (previous != null && !previous.equals(name)) {
+            byName.remove(key(previous), new Entry(uuid, previous));
+        }
+        byName.put(key(name), new Entry(uuid, name));
+    }
+
+    /**
+     * @param name The name of the player, case-insensitive.
+     * @return The player, or null if the name is unknown.
+     */
+    public Entry get(String name) {
+        return byName.get(key(name));
+    }
+
+    /**
+     * @param prefix The start of the name, case-insensitive.
+     * @param limit  The maximum amount of names.
+     * @return The names starting with the prefix in alphabetical order.
+     */
+    public List<String> complete(String prefix, int limit) {
+        String from = key(prefix);
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+        for (Entry entry : byName.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            if (names.size() >= limit) break;
+            names.add(entry.name());
+        }
+        return names;
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param uuid The unique identifier of the player.
+     * @param name The name of the player as it was registered.
+     */
+    public record Entry(UUID uuid, String name) {
+    }
+}
@@ -0,0 +1,50 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key.
+ * The first caller starts the loader, every caller asking for the same key while it is running
+ * shares that load instead of starting its own query.
+ * Results are not cached, the next call after completion loads again.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the loaded value
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Starts loading the value of the key on the executor, or joins a load of the same key that is already running.
+     *
+     * @param key      the key to load
+     * @param loader   loads the value, only called for the first caller
+     * @param executor runs the loader
+     * @return the load, completed exceptionally if the loader failed or the executor did not take it
+     */
+    public CompletableFuture<V> get(K key, Supplier<V> loader, Executor executor) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, created);
+        if (running != null) return running;
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(loader.get());
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+}
@@ -1,6 +1,7 @@
 package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
 
 import java.time.Duration;
+import java.util.Locale;
 
 public class TimeConverter {
 
@@ -9,32 +10,48 @@ public class TimeConverter {
     }
 
     public static String convertDurationToTimeString(Duration duration) {
-        if (duration == null || duration.isNegative()) return LocaleHandler.get("unknown");
+        return convertDurationToTimeString(duration, null);
+    }
+
+    public static String convertDurationToTimeString(Duration duration, Locale locale) {
+        if (duration == null || duration.isNegative()) return LocaleHandler.get(MessageKey.UNKNOWN, locale);
         if (duration.getSeconds() < 60)
-            return duration.getSeconds() + (duration.getSeconds() == 1 ? " " + LocaleHandler.get("second") : " " + LocaleHandler.get("seconds"));
+            return unit(duration.getSeconds(), MessageKey.SECOND, MessageKey.SECONDS, locale);
         if (duration.toMinutes() < 60)
-            return duration.toMinutes() + (duration.toMinutes() == 1 ? " " + LocaleHandler.get("minute") : " " + LocaleHandler.get("minutes"));
+            return unit(duration.toMinutes(), MessageKey.MINUTE, MessageKey.MINUTES, locale);
         if (duration.toHours() < 24)
-            return duration.toHours() + (duration.toHours() == 1 ? " " + LocaleHandler.get("hour") : " " + LocaleHandler.get("hours")) + " " + LocaleHandler.get("and") + " " + duration.minusHours(duration.toHours()).toMinutes() + (duration.minusHours(duration.toHours()).toMinutes() == 1 ? " " + LocaleHandler.get("minute") : " " + LocaleHandler.get("minutes"));
-        return duration.toDays() + (duration.toDays() == 1 ? " " + LocaleHandler.get("day") : " " + LocaleHandler.get("days")) + " " + LocaleHandler.get("and") + " " + duration.minusDays(duration.toDays()).toHours() + (duration.minusDays(duration.toDays()).toHours() == 1 ? " " + LocaleHandler.get("hour") : " " + LocaleHandler.get("hours"));
+            return unit(duration.toHours(), MessageKey.HOUR, MessageKey.HOURS, locale) + " " + LocaleHandler.get(MessageKey.AND, locale) + " " + unit(duration.minusHours(duration.toHours()).toMinutes(), MessageKey.MINUTE, MessageKey.MINUTES, locale);
+        return unit(duration.toDays(), MessageKey.DAY, MessageKey.DAYS, locale) + " " + LocaleHandler.get(MessageKey.AND, locale) + " " + unit(duration.minusDays(duration.toDays()).toHours(), MessageKey.HOUR, MessageKey.HOURS, locale);
     }
 
     public static String convertDurationToTimeStringShort(Duration duration) {
-        if (duration == null || duration.isNegative()) return LocaleHandler.get("unknown");
+        return convertDurationToTimeStringShort(duration, null);
+    }
+
+    public static String convertDurationToTimeStringShort(Duration duration, Locale locale) {
+        if (duration == null || duration.isNegative()) return LocaleHandler.get(MessageKey.UNKNOWN, locale);
         if (duration.getSeconds() < 60)
-            return duration.getSeconds() + (duration.getSeconds() == 1 ? " " + LocaleHandler.get("second") : " " + LocaleHandler.get("seconds"));
+            return unit(duration.getSeconds(), MessageKey.SECOND, MessageKey.SECONDS, locale);
         if (duration.toMinutes() < 60)
-            return duration.toMinutes() + (duration.toMinutes() == 1 ? " " + LocaleHandler.get("minute") : " " + LocaleHandler.get("minutes"));
+            return unit(duration.toMinutes(), MessageKey.MINUTE, MessageKey.MINUTES, locale);
         if (duration.toHours() < 24)
-            return duration.toHours() + (duration.toHours() == 1 ? " " + LocaleHandler.get("hour") : " " + LocaleHandler.get("hours")) + ", " + duration.minusHours(duration.toHours()).toMinutes() + (duration.minusHours(duration.toHours()).toMinutes() == 1 ? " " + LocaleHandler.get("minute") : " " + LocaleHandler.get("minutes"));
-        return duration.toDays() + (duration.toDays() == 1 ? " " + LocaleHandler.get("day") : " " + LocaleHandler.get("days")) + ", " + duration.minusDays(duration.toDays()).toHours() + (duration.minusDays(duration.toDays()).toHours() == 1 ? " " + LocaleHandler.get("hour") : " " + LocaleHandler.get("hours"));
+            return unit(duration.toHours(), MessageKey.HOUR, MessageKey.HOURS, locale) + ", " + unit(duration.minusHours(duration.toHours()).toMinutes(), MessageKey.MINUTE, MessageKey.MINUTES, locale);
+        return unit(duration.toDays(), MessageKey.DAY, MessageKey.DAYS, locale) + ", " + unit(duration.minusDays(duration.toDays()).toHours(), MessageKey.HOUR, MessageKey.HOURS, locale);
     }
 
     public static String getDetailedTimeString(Duration duration) {
-        if (duration == null || duration.isNegative()) return LocaleHandler.get("unknown");
-        return duration.toDays() + (duration.toDays() == 1 ? " " + LocaleHandler.get("day") : " " + LocaleHandler.get("days")) + ", " +
-                duration.minusDays(duration.toDays()).toHours() + (duration.minusDays(duration.toDays()).toHours() == 1 ? " " + LocaleHandler.get("hour") : " " + LocaleHandler.get("hours")) + ", " +
-                duration.minusHours(duration.toHours()).toMinutes() + (duration.minusHours(duration.toHours()).toMinutes() == 1 ? " " + LocaleHandler.get("minute") : " " + LocaleHandler.get("minutes")) + " " + LocaleHandler.get("and") + " " +
-                duration.minusMinutes(duration.toMinutes()).getSeconds() + (duration.minusMinutes(duration.toMinutes()).getSeconds() == 1 ? " " + LocaleHandler.get("second") : " " + LocaleHandler.get("seconds"));
+        return getDetailedTimeString(duration, null);
+    }
+
+    public static String getDetailedTimeString(Duration duration, Locale locale) {
+        if (duration == null || duration.isNegative()) return LocaleHandler.get(MessageKey.UNKNOWN, locale);
+        return unit(duration.toDays(), MessageKey.DAY, MessageKey.DAYS, locale) + ", " +
+                unit(duration.minusDays(duration.toDays()).toHours(), MessageKey.HOUR, MessageKey.HOURS, locale) + ", " +
+                unit(duration.minusHours(duration.toHours()).toMinutes(), MessageKey.MINUTE, MessageKey.MINUTES, locale) + " " + LocaleHandler.get(MessageKey.AND, locale) + " " +
+                unit(duration.minusMinutes(duration.toMinutes()).getSeconds(), MessageKey.SECOND, MessageKey.SECONDS, locale);
+    }
+
+    private static String unit(long value, MessageKey singular, MessageKey plural, Locale locale) {
+        return value + " " + LocaleHandler.get(value == 1 ? singular : plural, locale);
     }
 }
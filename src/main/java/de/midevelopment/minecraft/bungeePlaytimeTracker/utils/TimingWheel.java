@@ -0,0 +1,119 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel with four levels of 64 slots.
+ * Scheduling and cancelling a timer is O(1), advancing the wheel only touches the timers that expire
+ * and the slots that are cascaded into a lower level. With one tick per second the levels cover about
+ * one minute, one hour, three days and 194 days, timers further away are parked in the highest level
+ * and placed again when it turns.
+ *
+ * @param <T> the type of the values that expire
+ */
+public class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final List<List<Set<Timer<T>>>> levels = new ArrayList<>();
+    private long currentTick;
+
+    /**
+     * @param startTick the tick the wheel starts at, for example the current epoch second
+     */
+    public TimingWheel(long startTick) {
+        this.currentTick = startTick;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<Timer<T>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) slots.add(new LinkedHashSet<>());
+            levels.add(slots);
+        }
+    }
+
+    /**
+     * Schedules a value to expire at a tick. Ticks that already passed expire with the next advance.
+     *
+     * @param value        the value returned when the timer expires
+     * @param deadlineTick the tick the timer expires at
+     * @return the timer, used to cancel it
+     */
+    public synchronized Timer<T> schedule(T value, long deadlineTick) {
+        Timer<T> timer = new Timer<>(value, Math.max(deadlineTick, currentTick + 1));
+        place(timer);
+        return timer;
+    }
+
+    /**
+     * Cancels a timer if it did not expire yet.
+     */
+    public synchronized void cancel(Timer<T> timer) {
+        if (timer != null && timer.slot != null) {
+            timer.slot.remove(timer);
+            timer.slot = null;
+        }
+    }
+
+    /**
+     * Advances the wheel tick by tick up to the given tick.
+     *
+     * @param nowTick the current tick
+     * @return the values of all timers that expired, in order of their deadline
+     */
+    public synchronized List<T> advance(long nowTick) {
+        List<T> expired = new ArrayList<>();
+        while (currentTick < nowTick) {
+            currentTick++;
+            // cascade from the top, so timers moved down are cascaded again in the same tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) continue;
+                Set<Timer<T>> slot = levels.get(level).get((int) ((currentTick >>> (BITS * level)) & MASK));
+                List<Timer<T>> cascaded = new ArrayList<>(slot);
+                slot.clear();
+                for (Timer<T> timer : cascaded) place(timer);
+            }
+            Set<Timer<T>> slot = levels.get(0).get((int) (currentTick & MASK));
+            for (Timer<T> timer : slot) {
+                timer.slot = null;
+                expired.add(timer.value);
+            }
+            slot.clear();
+        }
+        return expired;
+    }
+
+    private void place(Timer<T> timer) {
+        long delta = Math.max(0, timer.deadline - currentTick);
+        long placeTick = currentTick + Math.min(delta, MAX_DELTA);
+        int level = 0;
+        while (level < LEVELS - 1 && Math.min(delta, MAX_DELTA) >= (1L << (BITS * (level + 1)))) level++;
+        Set<Timer<T>> slot = levels.get(level).get((int) ((placeTick >>> (BITS * level)) & MASK));
+        slot.add(timer);
+        timer.slot = slot;
+    }
+
+    /**
+     * A scheduled value.
+     */
+    public static final class Timer<T> {
+
+        private final T value;
+        private final long deadline;
+        private Set<Timer<T>> slot;
+
+        private Timer(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        public T getValue() { return value; }
+
+        public long getDeadline() { return deadline; }
+    }
+}
@@ -0,0 +1,49 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeltaChunkTest {
+
+    @Test
+    void onlineCountsRoundTrip() {
+        Random random = new Random(42);
+        int[] values = new int[360];
+        int online = 250;
+        for (int i = 0; i < values.length; i++) {
+            online = Math.max(0, online + random.nextInt(21) - 10);
+            values[i] = online;
+        }
+
+        byte[] data = DeltaChunk.encode(values, values.length);
+        assertArrayEquals(values, DeltaChunk.decode(data, values.length));
+        // the first sample is stored as it is, every small change afterwards takes one byte
+        assertEquals(values.length + 1, data.length);
+    }
+
+    @Test
+    void extremeValuesRoundTrip() {
+        int[] values = {0, -1, 1, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        assertArrayEquals(values, DeltaChunk.decode(DeltaChunk.encode(values, values.length), values.length));
+    }
+
+    @Test
+    void onlyCountSamplesAreEncoded() {
+        int[] values = {3, 5, 8, 13, 21};
+        assertArrayEquals(Arrays.copyOf(values, 3), DeltaChunk.decode(DeltaChunk.encode(values, 3), 3));
+        assertEquals(0, DeltaChunk.encode(values, 0).length);
+    }
+
+    @Test
+    void truncatedChunkIsRejected() {
+        int[] values = {1000, 2000, 3000};
+        byte[] data = DeltaChunk.encode(values, values.length);
+        assertThrows(IllegalArgumentException.class, () -> DeltaChunk.decode(Arrays.copyOf(data, data.length - 1), values.length));
+    }
+}
@@ -0,0 +1,81 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the estimate stays within its error bound, the players are generated from a fixed seed.
+ */
+class HyperLogLogTest {
+
+    // about three times the standard error of 1.6%
+    private static final double MAX_ERROR = 0.05;
+
+    @Test
+    void estimateIsWithinErrorBound() {
+        Random random = new Random(42);
+        HyperLogLog sketch = new HyperLogLog();
+        int added = 0;
+        for (int players : new int[]{100, 1_000, 10_000, 100_000, 500_000}) {
+            while (added < players) {
+                sketch.add(new UUID(random.nextLong(), random.nextLong()));
+                added++;
+            }
+            assertWithinBound(players, sketch.estimate());
+        }
+    }
+
+    @Test
+    void duplicatesAreCountedOnce() {
+        Random random = new Random(7);
+        HyperLogLog sketch = new HyperLogLog();
+        UUID[] players = new UUID[5_000];
+        for (int i = 0; i < players.length; i++) players[i] = new UUID(random.nextLong(), random.nextLong());
+        for (int round = 0; round < 3; round++) {
+            for (UUID player : players) sketch.add(player);
+        }
+        assertWithinBound(players.length, sketch.estimate());
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        Random random = new Random(1);
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        // 20000 players on the first proxy, 20000 on the second, 10000 of them on both
+        for (int i = 0; i < 30_000; i++) {
+            UUID player = new UUID(random.nextLong(), random.nextLong());
+            if (i < 20_000) first.add(player);
+            if (i >= 10_000) second.add(player);
+        }
+        first.merge(second);
+        assertWithinBound(30_000, first.estimate());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        Random random = new Random(3);
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1_000; i++) sketch.add(new UUID(random.nextLong(), random.nextLong()));
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+        assertArrayEquals(sketch.toBytes(), restored.toBytes());
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    private static void assertWithinBound(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        assertTrue(error <= MAX_ERROR, "Estimated " + estimate + " for " + expected + " players, error " + error);
+    }
+}
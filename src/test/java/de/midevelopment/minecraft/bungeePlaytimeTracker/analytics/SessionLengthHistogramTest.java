@@ -0,0 +1,43 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SessionLengthHistogramTest {
+
+    @Test
+    void sessionsAreCountedInTheirBucket() {
+        SessionLengthHistogram histogram = new SessionLengthHistogram();
+        // the upper bound of a bucket belongs to the next one
+        long[] seconds = {0, 59, 60, 299, 300, 899, 900, 1799, 1800, 3599, 3600, 7199, 7200, 14399, 14400, 100_000};
+        for (long length : seconds) histogram.add(length);
+
+        assertArrayEquals(new long[]{2, 2, 2, 2, 2, 2, 2, 2}, histogram.getCounts());
+        assertEquals(seconds.length, histogram.getTotal());
+    }
+
+    @Test
+    void mergeAddsTheCounts() {
+        SessionLengthHistogram first = new SessionLengthHistogram();
+        SessionLengthHistogram second = new SessionLengthHistogram();
+        first.add(30);
+        first.add(4000);
+        second.add(45);
+        second.add(20_000);
+
+        first.merge(second);
+        assertArrayEquals(new long[]{2, 0, 0, 0, 0, 1, 0, 1}, first.getCounts());
+        assertArrayEquals(new long[]{1, 0, 0, 0, 0, 0, 0, 1}, second.getCounts());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        SessionLengthHistogram histogram = new SessionLengthHistogram();
+        for (long length = 0; length < 20_000; length += 7) histogram.add(length);
+
+        SessionLengthHistogram restored = SessionLengthHistogram.fromBytes(histogram.toBytes());
+        assertArrayEquals(histogram.getCounts(), restored.getCounts());
+    }
+}
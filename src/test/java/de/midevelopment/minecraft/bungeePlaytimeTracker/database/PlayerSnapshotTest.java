@@ -0,0 +1,92 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PlayerSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenPlayersAreFoundByRank() throws IOException {
+        // more players than the initial capacity of the builder
+        List<PlayerSnapshot.Entry> players = players(3000);
+        PlayerSnapshot.Builder builder = new PlayerSnapshot.Builder();
+        players.forEach(builder::add);
+
+        PlayerSnapshot snapshot = PlayerSnapshot.open(PlayerSnapshot.write(directory, 1234, builder));
+        assertEquals(players.size(), snapshot.size());
+        assertEquals(1234, snapshot.getVersionStamp());
+        for (int rank = 0; rank < players.size(); rank++) {
+            PlayerSnapshot.Entry player = players.get(rank);
+            assertEquals(rank + 1, snapshot.getRank(player.uuid()), "rank of " + player.name());
+            assertEquals(player, snapshot.get(rank));
+            assertEquals(player, snapshot.find(player.uuid()));
+        }
+        assertEquals(-1, snapshot.getRank(UUID.randomUUID()));
+        assertNull(snapshot.find(UUID.randomUUID()));
+    }
+
+    @Test
+    void emptySnapshotHasNoRanks() throws IOException {
+        PlayerSnapshot snapshot = PlayerSnapshot.open(PlayerSnapshot.write(directory, 1, new PlayerSnapshot.Builder()));
+        assertEquals(0, snapshot.size());
+        assertEquals(-1, snapshot.getRank(UUID.randomUUID()));
+        assertEquals(0, snapshot.getTopPlayers(10).size());
+    }
+
+    @Test
+    void newestSnapshotIsOpenedAndOlderOnesDeleted() throws IOException {
+        for (long stamp : new long[]{300, 100, 200}) {
+            PlayerSnapshot.Builder builder = new PlayerSnapshot.Builder();
+            builder.add(new PlayerSnapshot.Entry(UUID.randomUUID(), "player" + stamp, (int) stamp));
+            PlayerSnapshot.write(directory, stamp, builder);
+        }
+
+        PlayerSnapshot newest = PlayerSnapshot.openNewest(directory);
+        assertEquals(300, newest.getVersionStamp());
+        assertEquals("player300", newest.get(0).name());
+
+        PlayerSnapshot.deleteOlder(directory, newest.getVersionStamp());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        PlayerSnapshot.Builder builder = new PlayerSnapshot.Builder();
+        players(10).forEach(builder::add);
+        Path file = PlayerSnapshot.write(directory, 1, builder);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IOException.class, () -> PlayerSnapshot.open(file));
+    }
+
+    /**
+     * @return players with random UUIDs, ordered by their playtime with the most playtime first
+     */
+    private static List<PlayerSnapshot.Entry> players(int amount) {
+        Random random = new Random(42);
+        List<PlayerSnapshot.Entry> players = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            players.add(new PlayerSnapshot.Entry(new UUID(random.nextLong(), random.nextLong()), "player" + i, (amount - i) * 60));
+        }
+        return players;
+    }
+}
@@ -0,0 +1,271 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.database;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks the query plans of the statements in {@link PlaytimeHandler} and {@link MilestoneHandler}.
+ * It fills a test database with realistic volumes, runs {@code EXPLAIN} on every statement and fails
+ * if a statement does a full table scan, a full index scan or a filesort that is not explicitly allowed.
+ * Every {@code SQL_} constant must either be checked or skipped here, so a new statement cannot slip through.
+ * <p>
+ * The plans are only checked if a database is given, all properties except {@code db.url} are optional:
+ * <pre>
+ * mvn test -Ddb.url=jdbc:mysql://localhost:3306/bungee_queryplan -Ddb.username=root -Ddb.password=password \
+ *     -Ddb.players=20000 -Ddb.sessions-per-player=20
+ * </pre>
+ * Never run it against a production database, it creates players and sessions.
+ */
+class QueryPlanTest {
+
+    private static final String FULL_TABLE_SCAN = "full table scan";
+    private static final String FULL_INDEX_SCAN = "full index scan";
+    private static final String FILESORT = "filesort";
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final int SERVERS = 8;
+
+    /**
+     * Statements without a plan worth checking, single row inserts by primary key.
+     */
+    private static final Set<String> SKIPPED = Set.of(
+            "PlaytimeHandler.SQL_REGISTER_PLAYER",
+            "PlaytimeHandler.SQL_START_SESSION",
+            "PlaytimeHandler.SQL_INSERT_CLOSED_SESSION",
+            "PlaytimeHandler.SQL_UPSERT_SERVER_PLAYTIME",
+            "PlaytimeHandler.SQL_UPSERT_SETTING",
+            "MilestoneHandler.SQL_MARK_REACHED"
+    );
+
+    private static Database database;
+
+    @BeforeAll
+    static void seedDatabase() throws SQLException {
+        String url = System.getProperty("db.url", "");
+        if (url.isBlank()) return;
+        URI uri = URI.create(url.replaceFirst("^jdbc:", ""));
+        database = new Database();
+        database.init(
+                uri.getHost(),
+                uri.getPort() < 0 ? 3306 : uri.getPort(),
+                uri.getPath().substring(1),
+                System.getProperty("db.username", "root"),
+                System.getProperty("db.password", "password"),
+                false
+        );
+        database.createTables();
+        seed(Integer.getInteger("db.players", 20000), Integer.getInteger("db.sessions-per-player", 20));
+    }
+
+    @AfterAll
+    static void shutdownDatabase() {
+        if (database != null) database.shutdown();
+    }
+
+    @Test
+    void everyStatementIsChecked() throws ReflectiveOperationException {
+        Set<String> checked = new HashSet<>();
+        for (Check check : checks(new Sample("", "", 0, 0), null, null, 0, "")) checked.add(check.name());
+        List<String> missing = new ArrayList<>();
+        for (Class<?> type : List.of(PlaytimeHandler.class, MilestoneHandler.class)) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class || !field.getName().startsWith("SQL_")) continue;
+                String name = type.getSimpleName() + "." + field.getName();
+                if (!checked.contains(name) && !SKIPPED.contains(name)) missing.add(name);
+            }
+        }
+        assertTrue(missing.isEmpty(), "Not checked, add them to QueryPlanTest: " + missing);
+    }
+
+    @Test
+    void queryPlansUseIndexes() throws SQLException, ReflectiveOperationException {
+        assumeTrue(database != null, "No database given with -Ddb.url");
+        PlaytimeHandler handler = new PlaytimeHandler(database, List.of("server-1"));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(ZoneOffset.UTC));
+        Timestamp weekAgo = Timestamp.valueOf(LocalDateTime.now(ZoneOffset.UTC).minusDays(7));
+        int excludedServerId = handler.getServerRegistry().getId("server-1");
+        Field recalculate = PlaytimeHandler.class.getDeclaredField("sqlRecalculatePlaytimes");
+        recalculate.setAccessible(true);
+
+        List<String> failures = new ArrayList<>();
+        try (Connection connection = database.getConnection()) {
+            for (Check check : checks(sample(), now, weekAgo, excludedServerId, (String) recalculate.get(handler))) {
+                List<String> problems = explain(connection, check);
+                if (!problems.isEmpty()) failures.add(check.name() + ": " + String.join(", ", problems));
+            }
+        }
+        assertTrue(failures.isEmpty(), "Query plans failed:\n" + String.join("\n", failures));
+    }
+
+    private static List<Check> checks(Sample sample, Timestamp now, Timestamp weekAgo, int excludedServerId, String recalculateSql)
+            throws ReflectiveOperationException {
+        List<Check> checks = new ArrayList<>();
+        checks.add(check("PlaytimeHandler.SQL_SELECT_PLAYTIME", sql(PlaytimeHandler.class, "SQL_SELECT_PLAYTIME"), sample.uuid));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_PLAYTIMES", sql(PlaytimeHandler.class, "SQL_SELECT_PLAYTIMES").formatted("?, ?"),
+                sample.uuid, sample.otherUuid));
+        checks.add(check("PlaytimeHandler.SQL_UPDATE_PLAYTIME", sql(PlaytimeHandler.class, "SQL_UPDATE_PLAYTIME"), 0, sample.uuid));
+        checks.add(check("PlaytimeHandler.SQL_UPDATE_SESSION", sql(PlaytimeHandler.class, "SQL_UPDATE_SESSION"), sample.sessionId, sample.sessionId));
+        checks.add(check("PlaytimeHandler.SQL_STOP_SESSION", sql(PlaytimeHandler.class, "SQL_STOP_SESSION"), sample.sessionId, sample.sessionId));
+        checks.add(check("PlaytimeHandler.SQL_STOP_SESSIONS", sql(PlaytimeHandler.class, "SQL_STOP_SESSIONS").formatted("?, ?", "?, ?"),
+                sample.sessionId, sample.otherSessionId, sample.sessionId, sample.otherSessionId));
+        checks.add(check("PlaytimeHandler.SQL_RECOVER_SESSIONS", sql(PlaytimeHandler.class, "SQL_RECOVER_SESSIONS"), 1));
+        // reload-players and the player snapshot read every player on purpose, in the background
+        checks.add(check("PlaytimeHandler.SQL_SELECT_ALL_PLAYERS", sql(PlaytimeHandler.class, "SQL_SELECT_ALL_PLAYERS"),
+                Set.of(FULL_TABLE_SCAN, FULL_INDEX_SCAN)));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_PLAYER_TOTALS", sql(PlaytimeHandler.class, "SQL_SELECT_PLAYER_TOTALS"),
+                Set.of(FULL_TABLE_SCAN, FULL_INDEX_SCAN, FILESORT)));
+        // reads the first rows of index_playtime, the LIMIT stops the scan
+        checks.add(check("PlaytimeHandler.SQL_SELECT_TOP_PLAYERS", sql(PlaytimeHandler.class, "SQL_SELECT_TOP_PLAYERS"), Set.of(FULL_INDEX_SCAN), 10));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_SESSION", sql(PlaytimeHandler.class, "SQL_SELECT_SESSION"), sample.sessionId));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_SESSIONS", sql(PlaytimeHandler.class, "SQL_SELECT_SESSIONS"), sample.uuid));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_SESSIONS_FIRST_PAGE", sql(PlaytimeHandler.class, "SQL_SELECT_SESSIONS_FIRST_PAGE"),
+                sample.uuid, weekAgo, now, 50));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_SESSIONS_NEXT_PAGE", sql(PlaytimeHandler.class, "SQL_SELECT_SESSIONS_NEXT_PAGE"),
+                sample.uuid, weekAgo, now, now, sample.sessionId, 50));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_SERVER_PLAYTIMES", sql(PlaytimeHandler.class, "SQL_SELECT_SERVER_PLAYTIMES"), sample.uuid));
+        checks.add(check("PlaytimeHandler.SQL_SELECT_SETTING", sql(PlaytimeHandler.class, "SQL_SELECT_SETTING"), "applied-excluded-servers"));
+        checks.add(check("PlaytimeHandler.sqlRecalculatePlaytimes", recalculateSql, Set.of(FULL_TABLE_SCAN, FULL_INDEX_SCAN), excludedServerId));
+        checks.add(check("MilestoneHandler.SQL_SELECT_REACHED", sql(MilestoneHandler.class, "SQL_SELECT_REACHED"), sample.uuid));
+        return checks;
+    }
+
+    /**
+     * Reads a private statement constant, the handlers keep their statements private.
+     */
+    private static String sql(Class<?> type, String name) throws ReflectiveOperationException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return (String) field.get(null);
+    }
+
+    private static Check check(String name, String sql, Object... params) {
+        return check(name, sql, Set.of(), params);
+    }
+
+    private static Check check(String name, String sql, Set<String> allowed, Object... params) {
+        return new Check(name, sql.strip().replaceAll(";$", ""), allowed, params);
+    }
+
+    private static List<String> explain(Connection connection, Check check) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + check.sql())) {
+            for (int i = 0; i < check.params().length; i++) ps.setObject(i + 1, check.params()[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    String type = rs.getString("type");
+                    String extra = Objects.requireNonNullElse(rs.getString("Extra"), "");
+                    // derived tables and subquery results are materialized and always read whole
+                    boolean derived = table == null || table.startsWith("<");
+                    if (!derived && "ALL".equals(type) && !check.allowed().contains(FULL_TABLE_SCAN)) {
+                        problems.add(FULL_TABLE_SCAN + " on " + table + " (" + rs.getString("rows") + " rows)");
+                    }
+                    if (!derived && "index".equals(type) && !check.allowed().contains(FULL_INDEX_SCAN)) {
+                        problems.add(FULL_INDEX_SCAN + " of " + rs.getString("key") + " on " + table);
+                    }
+                    if (extra.contains("Using filesort") && !check.allowed().contains(FILESORT)) {
+                        problems.add(FILESORT + " on " + table);
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Adds players with closed sessions spread over the last year, unless the database already holds enough players.
+     */
+    private static void seed(int players, int sessionsPerPlayer) throws SQLException {
+        try (Connection connection = database.getConnection();
+             Statement st = connection.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM mi_bungee_player_playtime")) {
+                rs.next();
+                players -= rs.getInt(1);
+            }
+            if (players <= 0) return;
+
+            ServerRegistry servers = new ServerRegistry(database);
+            int[] serverIds = new int[SERVERS];
+            for (int i = 0; i < SERVERS; i++) serverIds[i] = servers.getOrCreateId("server-" + (i + 1));
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long nowSeconds = System.currentTimeMillis() / 1000;
+            StringBuilder playerRows = new StringBuilder();
+            StringBuilder sessionRows = new StringBuilder();
+            int playerCount = 0;
+            int sessionCount = 0;
+            for (int p = 0; p < players; p++) {
+                String uuid = UUID.randomUUID().toString();
+                appendRow(playerRows, "'" + uuid + "', 'player" + Math.abs(uuid.hashCode() % 10_000_000) + "', " + random.nextInt(1_000_000));
+                if (++playerCount == SEED_BATCH_SIZE) {
+                    insert(st, "mi_bungee_player_playtime (uuid, username, playtime)", playerRows);
+                    playerCount = 0;
+                }
+                long start = nowSeconds - 365L * 24 * 3600 + random.nextLong(24 * 3600);
+                for (int s = 0; s < sessionsPerPlayer; s++) {
+                    long end = start + 60 + random.nextLong(2 * 3600);
+                    appendRow(sessionRows, "'" + uuid + "', " + serverIds[random.nextInt(SERVERS)] + ", 1, 1, FROM_UNIXTIME(" + start + "), FROM_UNIXTIME(" + end + ")");
+                    start = end + random.nextLong(365L * 24 * 3600 / sessionsPerPlayer);
+                    if (++sessionCount == SEED_BATCH_SIZE) {
+                        insert(st, "mi_bungee_player_playtime_sessions (player_uuid, server_id, instance_id, state, start_time, end_time)", sessionRows);
+                        sessionCount = 0;
+                    }
+                }
+            }
+            if (playerCount > 0) insert(st, "mi_bungee_player_playtime (uuid, username, playtime)", playerRows);
+            if (sessionCount > 0) {
+                insert(st, "mi_bungee_player_playtime_sessions (player_uuid, server_id, instance_id, state, start_time, end_time)", sessionRows);
+            }
+            st.executeUpdate("""
+                    REPLACE INTO mi_bungee_player_server_playtime (player_uuid, server_id, playtime)
+                    SELECT player_uuid, server_id, SUM(diff_time) FROM mi_bungee_player_playtime_sessions GROUP BY player_uuid, server_id
+                    """);
+            st.execute("ANALYZE TABLE mi_bungee_player_playtime, mi_bungee_player_playtime_sessions, mi_bungee_player_server_playtime, mi_bungee_servers");
+        }
+    }
+
+    private static void appendRow(StringBuilder rows, String values) {
+        if (!rows.isEmpty()) rows.append(", ");
+        rows.append('(').append(values).append(')');
+    }
+
+    private static void insert(Statement st, String table, StringBuilder rows) throws SQLException {
+        st.executeUpdate("INSERT IGNORE INTO " + table + " VALUES " + rows);
+        rows.setLength(0);
+    }
+
+    private static Sample sample() throws SQLException {
+        try (Connection connection = database.getConnection();
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT player_uuid, id FROM mi_bungee_player_playtime_sessions ORDER BY id DESC LIMIT 2")) {
+            if (!rs.next()) throw new IllegalStateException("The database holds no sessions");
+            String uuid = rs.getString(1);
+            int sessionId = rs.getInt(2);
+            if (!rs.next()) return new Sample(uuid, uuid, sessionId, sessionId);
+            return new Sample(uuid, rs.getString(1), sessionId, rs.getInt(2));
+        }
+    }
+
+    private record Check(String name, String sql, Set<String> allowed, Object[] params) {
+    }
+
+    private record Sample(String uuid, String otherUuid, int sessionId, int otherSessionId) {
+    }
+}
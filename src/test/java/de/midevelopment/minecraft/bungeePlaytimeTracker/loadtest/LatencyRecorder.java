@@ -0,0 +1,46 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples of one operation and computes exact percentiles from them.
+ */
+class LatencyRecorder {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count = 0;
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) samples = Arrays.copyOf(samples, samples.length * 2);
+        samples[count++] = nanos;
+    }
+
+    /**
+     * Formats the count, the throughput and the p50/p99/p999/max latencies in milliseconds.
+     *
+     * @param elapsedSeconds the duration of the run
+     */
+    synchronized String report(double elapsedSeconds) {
+        if (count == 0) return String.format("%-22s %9d", name, 0);
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return String.format("%-22s %9d %10.1f/s   p50 %8.2fms   p99 %8.2fms   p999 %8.2fms   max %8.2fms",
+                name, count, count / elapsedSeconds,
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)),
+                millis(percentile(sorted, 0.999)), millis(sorted[count - 1]));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,280 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.loadtest;
+
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.ClusterHandler;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.Database;
+import de.midevelopment.minecraft.bungeePlaytimeTracker.database.PlaytimeHandler;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Standalone load generator for the storage layer.
+ * It simulates the join, server switch and quit sequences of the {@code PlayerListener}, the periodic session
+ * update of the proxy and {@code /playtime}, leaderboard and placeholder lookups for thousands of synthetic players
+ * against a local database, and reports throughput, latency percentiles and connection pool wait times.
+ * <p>
+ * It is part of the test sources and not shipped in the plugin jar. Usage, all options are optional:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=de.midevelopment.minecraft.bungeePlaytimeTracker.loadtest.LoadGenerator \
+ *     -Dexec.args="--host=localhost --port=3306 --database=bungee_loadtest --username=root --password=password
+ *     --players=5000 --arrival-rate=50 --session-seconds=120 --switches=3 --servers=8 --switch-pattern=lobby
+ *     --lookup-rate=200 --leaderboard-rate=5 --heartbeat-seconds=30 --duration=300 --threads=32 --pool-size=5
+ *     --server-prep-stmts=on"
+ * </pre>
+ * {@code --server-prep-stmts} is {@code on}, {@code off} or {@code both}, which runs the load twice,
+ * with and without server-side prepared statements, and reports both runs.
+ * Never run it against a production database, it creates real players and sessions.
+ */
+public class LoadGenerator {
+
+    private static final long TICK_MILLIS = 100;
+
+    private final Map<String, String> options;
+    private final boolean serverPrepStmts;
+    private final Database database = new Database();
+    private final Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+    private final Map<UUID, SimPlayer> online = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<UUID> offline = new ConcurrentLinkedQueue<>();
+    private final List<String> servers = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private PlaytimeHandler playtimeHandler;
+    private volatile boolean running = true;
+
+    private LoadGenerator(Map<String, String> options, boolean serverPrepStmts) {
+        this.options = options;
+        this.serverPrepStmts = serverPrepStmts;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid argument, expected --key=value: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        String serverPrepStmts = options.getOrDefault("server-prep-stmts", "on");
+        switch (serverPrepStmts) {
+            case "on" -> new LoadGenerator(options, true).run();
+            case "off" -> new LoadGenerator(options, false).run();
+            case "both" -> {
+                new LoadGenerator(options, true).run();
+                System.out.println();
+                new LoadGenerator(options, false).run();
+            }
+            default -> throw new IllegalArgumentException("Invalid server-prep-stmts, expected on, off or both: " + serverPrepStmts);
+        }
+    }
+
+    private void run() throws InterruptedException, SQLException {
+        int players = intOption("players", 5000);
+        double arrivalRate = doubleOption("arrival-rate", 50);
+        double lookupRate = doubleOption("lookup-rate", 200);
+        double leaderboardRate = doubleOption("leaderboard-rate", 5);
+        int heartbeatSeconds = intOption("heartbeat-seconds", 30);
+        int durationSeconds = intOption("duration", 300);
+
+        LatencyRecorder poolWait = recorder("pool.wait");
+        database.setConnectionWaitRecorder(poolWait::record);
+        database.setServerPrepStmts(serverPrepStmts);
+        database.init(
+                option("host", "localhost"),
+                intOption("port", 3306),
+                option("database", "bungee_loadtest"),
+                option("username", "root"),
+                option("password", "password"),
+                false,
+                intOption("pool-size", 5)
+        );
+        database.createTables();
+
+        for (int i = 1; i <= intOption("servers", 8); i++) servers.add("server-" + i);
+        ClusterHandler clusterHandler = new ClusterHandler(database, "loadtest-" + UUID.randomUUID());
+        playtimeHandler = new PlaytimeHandler(database, List.of(), clusterHandler.register());
+        for (int i = 0; i < players; i++) offline.add(UUID.randomUUID());
+
+        scheduler = Executors.newScheduledThreadPool(intOption("threads", 32));
+        scheduler.scheduleAtFixedRate(() -> {
+            if (!running) return;
+            for (int i = poisson(arrivalRate * TICK_MILLIS / 1000.0); i > 0; i--) {
+                UUID uuid = offline.poll();
+                if (uuid == null) break;
+                scheduler.execute(() -> join(uuid));
+            }
+            for (int i = poisson(lookupRate * TICK_MILLIS / 1000.0); i > 0; i--) {
+                scheduler.execute(this::lookup);
+            }
+            for (int i = poisson(leaderboardRate * TICK_MILLIS / 1000.0); i > 0; i--) {
+                scheduler.execute(() -> time("command.leaderboard", () -> playtimeHandler.getTopPlayers(10)));
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        System.out.println("Running for " + durationSeconds + " seconds with " + players + " synthetic players, server-side prepared statements "
+                + (serverPrepStmts ? "on" : "off") + "...");
+        for (int second = 1; second <= durationSeconds; second++) {
+            Thread.sleep(1000);
+            if (second % 10 == 0) System.out.println(second + "s, online: " + online.size());
+        }
+        running = false;
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        // close the remaining sessions, like a proxy shutdown
+        for (SimPlayer player : online.values()) {
+            playtimeHandler.stopPlaytime(player.sessionId);
+        }
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        database.shutdown();
+
+        System.out.println();
+        System.out.println("server-side prepared statements " + (serverPrepStmts ? "on" : "off"));
+        System.out.printf("%-22s %9s %12s%n", "operation", "count", "throughput");
+        recorders.keySet().stream().sorted().forEach(name -> System.out.println(recorders.get(name).report(elapsedSeconds)));
+    }
+
+    private void join(UUID uuid) {
+        time("join.register", () -> playtimeHandler.registerPlayer(uuid, "Sim" + uuid.toString().substring(0, 8)));
+        SimPlayer player = new SimPlayer(uuid, intOption("switches", 3));
+        player.server = nextServer(null);
+        player.sessionId = time("join.start", () -> playtimeHandler.startPlaytime(uuid, player.server));
+        online.put(uuid, player);
+        scheduleNext(player);
+    }
+
+    private void scheduleNext(SimPlayer player) {
+        long delay = (long) exponential(doubleOption("session-seconds", 120) * 1000);
+        scheduler.schedule(() -> {
+            if (!running) return;
+            if (player.switchesLeft-- > 0) switchServer(player);
+            else quit(player);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void switchServer(SimPlayer player) {
+        time("switch.stop", () -> playtimeHandler.stopPlaytime(player.sessionId));
+        player.server = nextServer(player.server);
+        player.sessionId = time("switch.start", () -> playtimeHandler.startPlaytime(player.uuid, player.server));
+        scheduleNext(player);
+    }
+
+    private void quit(SimPlayer player) {
+        online.remove(player.uuid);
+        time("quit.stop", () -> playtimeHandler.stopPlaytime(player.sessionId));
+        time("quit.recalculate", () -> playtimeHandler.getPlayerCurrentPlaytime(player.uuid));
+        offline.add(player.uuid);
+    }
+
+    private void heartbeat() {
+        if (!running) return;
+        time("heartbeat.tick", () -> {
+            for (SimPlayer player : online.values()) {
+                time("heartbeat.update", () -> playtimeHandler.updatePlaytime(player.sessionId));
+            }
+        });
+    }
+
+    private void lookup() {
+        SimPlayer player = randomOnlinePlayer();
+        if (player == null) return;
+        if (ThreadLocalRandom.current().nextInt(10) < 7) {
+            time("placeholder.playtime", () -> playtimeHandler.getPlayerPlaytime(player.uuid));
+        } else {
+            time("command.playtime", () -> playtimeHandler.getPlayerCurrentPlaytime(player.uuid));
+        }
+    }
+
+    private SimPlayer randomOnlinePlayer() {
+        Object[] players = online.values().toArray();
+        if (players.length == 0) return null;
+        return (SimPlayer) players[ThreadLocalRandom.current().nextInt(players.length)];
+    }
+
+    /**
+     * Picks the next server. With the {@code lobby} pattern players alternate between the
+     * first server and a random game server, with {@code random} every server is equally likely.
+     */
+    private String nextServer(String current) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (option("switch-pattern", "lobby").equals("lobby")) {
+            if (current == null || !current.equals(servers.get(0))) return servers.get(0);
+            return servers.get(1 + random.nextInt(servers.size() - 1));
+        }
+        return servers.get(random.nextInt(servers.size()));
+    }
+
+    private void time(String operation, Runnable runnable) {
+        time(operation, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private <T> T time(String operation, Supplier<T> supplier) {
+        long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            recorder(operation).record(System.nanoTime() - start);
+        }
+    }
+
+    private LatencyRecorder recorder(String operation) {
+        return recorders.computeIfAbsent(operation, LatencyRecorder::new);
+    }
+
+    private static int poisson(double lambda) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (lambda > 30) return (int) Math.max(0, Math.round(lambda + Math.sqrt(lambda) * random.nextGaussian()));
+        double limit = Math.exp(-lambda);
+        double product = random.nextDouble();
+        int events = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            events++;
+        }
+        return events;
+    }
+
+    private static double exponential(double mean) {
+        return -mean * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    private String option(String key, String def) {
+        return options.getOrDefault(key, def);
+    }
+
+    private int intOption(String key, int def) {
+        return options.containsKey(key) ? Integer.parseInt(options.get(key)) : def;
+    }
+
+    private double doubleOption(String key, double def) {
+        return options.containsKey(key) ? Double.parseDouble(options.get(key)) : def;
+    }
+
+    private static class SimPlayer {
+
+        final UUID uuid;
+        volatile int sessionId;
+        volatile String server;
+        volatile int switchesLeft;
+
+        SimPlayer(UUID uuid, int switches) {
+            this.uuid = uuid;
+            this.switchesLeft = ThreadLocalRandom.current().nextInt(switches + 1);
+        }
+    }
+}
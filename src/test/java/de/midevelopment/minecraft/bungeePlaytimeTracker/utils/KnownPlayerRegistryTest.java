@@ -0,0 +1,98 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KnownPlayerRegistryTest {
+
+    @Test
+    void playerIsKnownWithItsStoredName() {
+        KnownPlayerRegistry registry = new KnownPlayerRegistry();
+        UUID uuid = UUID.randomUUID();
+        assertFalse(registry.isKnown(uuid, "Notch"));
+
+        registry.put(uuid, "Notch");
+        assertTrue(registry.isKnown(uuid, "Notch"));
+        assertFalse(registry.isKnown(uuid, "notch"));
+        assertFalse(registry.isKnown(UUID.randomUUID(), "Notch"));
+
+        registry.put(uuid, "jeb_");
+        assertTrue(registry.isKnown(uuid, "jeb_"));
+        assertFalse(registry.isKnown(uuid, "Notch"));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void namesOfEveryLengthArePacked() {
+        KnownPlayerRegistry registry = new KnownPlayerRegistry();
+        UUID uuid = UUID.randomUUID();
+        String name = "";
+        for (char c = 'a'; name.length() < 16; c++) {
+            name += c;
+            registry.put(uuid, name);
+            assertTrue(registry.isKnown(uuid, name), name);
+            assertFalse(registry.isKnown(uuid, name.substring(0, name.length() - 1)), name);
+        }
+    }
+
+    @Test
+    void namesThatCannotBePackedAreNeverKnown() {
+        KnownPlayerRegistry registry = new KnownPlayerRegistry();
+        UUID longName = UUID.randomUUID();
+        UUID otherCharacters = UUID.randomUUID();
+        registry.put(longName, "SeventeenLetters_");
+        registry.put(otherCharacters, "Spieler_ä");
+
+        assertFalse(registry.isKnown(longName, "SeventeenLetters_"));
+        assertFalse(registry.isKnown(otherCharacters, "Spieler_ä"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void collidingPlayersAreStoredInTheNextSlots() {
+        KnownPlayerRegistry registry = new KnownPlayerRegistry();
+        // the slot is taken from both halves of the UUID combined, these three share one
+        UUID first = new UUID(0x1234, 0);
+        UUID second = new UUID(0, 0x1234);
+        UUID third = new UUID(0x1230, 0x4);
+        registry.put(first, "first");
+        registry.put(second, "second");
+        registry.put(third, "third");
+
+        assertTrue(registry.isKnown(first, "first"));
+        assertTrue(registry.isKnown(second, "second"));
+        assertTrue(registry.isKnown(third, "third"));
+        assertFalse(registry.isKnown(second, "first"));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    void playersAreKeptWhenTheTableGrows() {
+        KnownPlayerRegistry registry = new KnownPlayerRegistry();
+        Random random = new Random(42);
+        UUID[] players = new UUID[20_000];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new UUID(random.nextLong(), random.nextLong());
+            registry.put(players[i], "player" + i);
+        }
+
+        assertEquals(players.length, registry.size());
+        for (int i = 0; i < players.length; i++) {
+            assertTrue(registry.isKnown(players[i], "player" + i), "player" + i);
+        }
+    }
+
+    @Test
+    void nilUuidIsIgnored() {
+        KnownPlayerRegistry registry = new KnownPlayerRegistry();
+        registry.put(new UUID(0, 0), "nobody");
+        assertFalse(registry.isKnown(new UUID(0, 0), "nobody"));
+        assertEquals(0, registry.size());
+    }
+}
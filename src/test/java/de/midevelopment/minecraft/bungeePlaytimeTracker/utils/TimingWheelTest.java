@@ -0,0 +1,68 @@
+package de.midevelopment.minecraft.bungeePlaytimeTracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that timers expire exactly at their deadline, also after they were cascaded from a higher level.
+ */
+class TimingWheelTest {
+
+    private static final long START = 1_700_000_000L;
+
+    @Test
+    void timerExpiresAtItsDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        wheel.schedule("a", START + 10);
+
+        assertTrue(wheel.advance(START + 9).isEmpty(), "expired before its deadline");
+        assertEquals(List.of("a"), wheel.advance(START + 10));
+        assertTrue(wheel.advance(START + 100).isEmpty(), "expired twice");
+    }
+
+    @Test
+    void timerExpiresAfterCascade() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        // one minute away is placed in the second level, five hours away in the third
+        wheel.schedule("minute", START + 70);
+        wheel.schedule("hours", START + 5 * 3600 + 17);
+
+        assertTrue(wheel.advance(START + 69).isEmpty(), "expired before its deadline");
+        assertEquals(List.of("minute"), wheel.advance(START + 70));
+        assertTrue(wheel.advance(START + 5 * 3600 + 16).isEmpty(), "expired before its deadline");
+        assertEquals(List.of("hours"), wheel.advance(START + 5 * 3600 + 17));
+    }
+
+    @Test
+    void timersExpireInOrderOfTheirDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        wheel.schedule("third", START + 4000);
+        wheel.schedule("first", START + 3);
+        wheel.schedule("second", START + 200);
+
+        assertEquals(List.of("first", "second", "third"), wheel.advance(START + 5000));
+    }
+
+    @Test
+    void cancelledTimerDoesNotExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        TimingWheel.Timer<String> timer = wheel.schedule("a", START + 100);
+        wheel.schedule("b", START + 100);
+        wheel.cancel(timer);
+
+        assertEquals(List.of("b"), wheel.advance(START + 100));
+    }
+
+    @Test
+    void passedDeadlineExpiresWithTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        wheel.advance(START + 50);
+        wheel.schedule("late", START + 10);
+
+        assertEquals(List.of("late"), wheel.advance(START + 51));
+    }
+}